@@ -0,0 +1,109 @@
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The {@code AutoTuner} class picks the {@link CompressionSettings} for an input by
+ * trial-compressing the head of it with a handful of candidate settings and keeping the
+ * one that does best on the chosen target.
+ *
+ * @author Stevie K. Halprin
+ */
+public class AutoTuner {
+
+    /**
+     * What the tuner optimizes for.
+     */
+    public enum Target {
+        // Most input chars per nanosecond spent compressing
+        FAST,
+        // Fewest compressed bytes
+        SMALL
+    }
+
+    // Most chars at the head of the input that are trial-compressed
+    public static final int SAMPLE_SIZE = 1 << 16;
+    // Fewest chars that are trial-compressed, since much shorter samples favor narrow widths
+    private static final int MIN_SAMPLE_SIZE = 1 << 14;
+    // Chars trial-compressed over all candidates and runs, per char of the input, so that
+    // tuning costs about as much as compressing the input several times over
+    private static final int TRIAL_BUDGET = 8;
+    // Number of timed runs per candidate when aiming for speed, of which the fastest counts.
+    // Output size doesn't change from run to run, so aiming for size takes a single run
+    private static final int FAST_RUNS = 3;
+    // Candidates timed within this fraction of each other count as equally fast
+    private static final double TIME_TOLERANCE = 0.1;
+
+    private static final int[] WIDTHS = {9, 10, 12, 14, 16};
+    private static final int[] BLOCK_SIZES = {1 << 13, 1 << 15, 0};
+    private static final int[] ENGINES = {CompressionSettings.ENGINE_TST, CompressionSettings.ENGINE_HASH};
+    private static final boolean[] WORDS = {false, true};
+
+    /**
+     * Chooses the settings to compress the given text with.
+     * @param text The text that will be compressed.
+     * @param target The metric to optimize.
+     * @return the candidate settings that did best on the head of the text, or
+     *         {@link CompressionSettings#DEFAULT} itself when aiming for size and the original
+     *         format, which has no header or block types, came out smaller than every framed stream.
+     */
+    public static CompressionSettings tune(String text, Target target) {
+        int runs = target == Target.FAST ? FAST_RUNS : 1;
+        int candidates = WIDTHS.length * BLOCK_SIZES.length * ENGINES.length * WORDS.length;
+        long sample = (long) TRIAL_BUDGET * text.length() / ((long) candidates * runs);
+        int sampleEnd = (int) Math.min(text.length(), Math.min(SAMPLE_SIZE, Math.max(MIN_SAMPLE_SIZE, sample)));
+
+        // Warm up the compressor once, so the first candidate is not timed cold
+        if (target == Target.FAST) trial(text, sampleEnd, CompressionSettings.DEFAULT);
+
+        CompressionSettings best = null;
+        long bestSize = Long.MAX_VALUE;
+        long bestTime = Long.MAX_VALUE;
+        for (int width : WIDTHS) {
+            for (int blockSize : BLOCK_SIZES) {
+                // Blocks at least as large as the sample all act like the single block,
+                // which is always tried so that even empty text gets settings
+                if (blockSize != 0 && blockSize >= sampleEnd) continue;
+                for (int engine : ENGINES) for (boolean words : WORDS) {
+                    // Narrow widths leave no codes for words, so word mode would repeat the char candidate
+                    if (words && (1 << width) / 2 <= TextCompressor.FIRST_CODE) continue;
+                    CompressionSettings candidate = new CompressionSettings(width, blockSize, engine, words);
+                    long size = 0;
+                    long time = Long.MAX_VALUE;
+                    for (int run = 0; run < runs; run++) {
+                        long start = System.nanoTime();
+                        size = trial(text, sampleEnd, candidate);
+                        time = Math.min(time, System.nanoTime() - start);
+                    }
+
+                    // When aiming for speed, timing noise shouldn't decide between candidates,
+                    // so near-ties go to the smaller output
+                    boolean better;
+                    if (target == Target.SMALL)
+                        better = size < bestSize || (size == bestSize && time < bestTime);
+                    else if (time < bestTime * (1 - TIME_TOLERANCE))
+                        better = true;
+                    else
+                        better = time <= bestTime * (1 + TIME_TOLERANCE) && size < bestSize;
+                    if (better) {
+                        best = candidate;
+                        bestSize = size;
+                        bestTime = time;
+                    }
+                }
+            }
+        }
+        // The header and block types of a framed stream outweigh a narrower width on tiny inputs
+        if (target == Target.SMALL && trial(text, sampleEnd, null) < bestSize) best = CompressionSettings.DEFAULT;
+        return best;
+    }
+
+    // Compress the head of the text in memory, in the original format if settings is null,
+    // and return the number of compressed bytes
+    private static long trial(String text, int end, CompressionSettings settings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        if (settings == null) TextCompressor.compress(text.substring(0, end), out);
+        else TextCompressor.compress(text.substring(0, end), out, settings);
+        out.flush();
+        return bytes.size();
+    }
+}
@@ -0,0 +1,107 @@
+/******************************************************************************
+ *  Compilation:  javac Benchmark.java
+ *  Execution:    java Benchmark [file ...]
+ *  Dependencies: TextCompressor.java LZWEncoder.java
+ *  Data files:   abra.txt abra2.txt tricky.txt alice.txt (the defaults)
+ *
+ *  % java Benchmark alice.txt
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *  The {@code Benchmark} class measures how fast the framed compressor runs on each
+ *  given file with the TST engine, with and without its hot-phrase cache, and with
+ *  the hash engine, at a small and a large code width. It also measures how long
+ *  each line takes to come out when the file is compressed as a stream of line records.
+ *
+ *  @author Stevie K. Halprin
+ */
+public class Benchmark {
+
+    private static final String[] DEFAULT_FILES = {"abra.txt", "abra2.txt", "tricky.txt", "alice.txt"};
+    // Minimum time spent per configuration, so tiny files are compressed many times over
+    private static final long MIN_NANOS = 1_000_000_000L;
+    private static final long WARMUP_NANOS = 300_000_000L;
+    private static final int[] WIDTHS = {TextCompressor.WIDTH, 20};
+
+    public static void main(String[] args) throws IOException {
+        String[] files = args.length > 0 ? args : DEFAULT_FILES;
+
+        System.out.printf("%-12s %-6s %-6s %-6s %10s %10s%n", "file", "engine", "width", "cache", "MB/s", "hit rate");
+        for (String file : files) {
+            String text = new String(Files.readAllBytes(Path.of(file)), StandardCharsets.ISO_8859_1);
+            if (text.isEmpty()) continue;
+            for (int width : WIDTHS) {
+                bench(file, text, new CompressionSettings(width, 0, CompressionSettings.ENGINE_TST), 0);
+                bench(file, text, new CompressionSettings(width, 0, CompressionSettings.ENGINE_TST), LZWEncoder.DEFAULT_CACHE_BITS);
+                bench(file, text, new CompressionSettings(width, 0, CompressionSettings.ENGINE_HASH), 0);
+            }
+        }
+
+        System.out.printf("%n%-12s %10s %12s%n", "file", "records", "us/record");
+        for (String file : files) {
+            String text = new String(Files.readAllBytes(Path.of(file)), StandardCharsets.ISO_8859_1);
+            if (text.isEmpty()) continue;
+            runRecords(text, WARMUP_NANOS);
+            long start = System.nanoTime();
+            long records = runRecords(text, MIN_NANOS);
+            long time = System.nanoTime() - start;
+            System.out.printf("%-12s %10d %12.2f%n", Path.of(file).getFileName(), records, time / 1e3 / records);
+        }
+    }
+
+    // Compress the text as line records, including the flush after each one, until the time is up,
+    // and return how many records were compressed
+    private static long runRecords(String text, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long records = 0;
+        // One long-running stream, as a log pipeline would have
+        LZWEncoder encoder = new LZWEncoder(CompressionSettings.RECORDS, new BinaryOut(OutputStream.nullOutputStream()));
+        do {
+            for (int start = 0; start < text.length(); records++) {
+                int newline = text.indexOf('\n', start);
+                int stop = newline < 0 ? text.length() : newline + 1;
+                encoder.encodeRecord(text, start, stop);
+                start = stop;
+            }
+        } while (System.nanoTime() < end);
+        return records;
+    }
+
+    // Time compressing the text with the given settings and print one row of results
+    private static void bench(String file, String text, CompressionSettings settings, int cacheBits) {
+        run(newEncoder(settings, cacheBits), text, WARMUP_NANOS);
+
+        LZWEncoder encoder = newEncoder(settings, cacheBits);
+        long start = System.nanoTime();
+        long chars = run(encoder, text, MIN_NANOS) * text.length();
+        long time = System.nanoTime() - start;
+
+        long lookups = encoder.cacheHits() + encoder.cacheMisses();
+        String hitRate = lookups == 0 ? "-" : String.format("%.1f%%", 100.0 * encoder.cacheHits() / lookups);
+        String engine = settings.engine == CompressionSettings.ENGINE_HASH ? "hash" : "tst";
+        System.out.printf("%-12s %-6s %-6d %-6s %10.2f %10s%n", Path.of(file).getFileName(), engine, settings.width,
+                cacheBits == 0 ? "off" : "2^" + cacheBits, chars * 1e3 / time, hitRate);
+    }
+
+    // An encoder whose output is thrown away, so only the compression itself is timed
+    private static LZWEncoder newEncoder(CompressionSettings settings, int cacheBits) {
+        return new LZWEncoder(settings, new BinaryOut(OutputStream.nullOutputStream()), cacheBits);
+    }
+
+    // Compress the text over and over until the time is up, and return how many times it was compressed
+    private static long run(LZWEncoder encoder, String text, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long rounds = 0;
+        do {
+            encoder.encode(text);
+            rounds++;
+        } while (System.nanoTime() < end);
+        return rounds;
+    }
+}
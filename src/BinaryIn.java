@@ -0,0 +1,301 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryIn.java
+ *  Execution:    java BinaryIn
+ *  Dependencies: none
+ *
+ *  This library is for reading binary data from an input stream.
+ *
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+/**
+ *  The <code>BinaryIn</code> data type provides methods for reading
+ *  in bits from a binary input stream. It is the instance counterpart of
+ *  {@link BinaryStdIn}, so that compressed data can also be read from
+ *  in-memory sources. It can process the bits one bit at a time
+ *  (as a {@code boolean}), 8 bits at a time (as a {@code byte} or
+ *  {@code char}), or <em>r</em> bits at a time (as an {@code int}).
+ *  <p>
+ *  All primitive types are assumed to be represented using their
+ *  standard Java representations, in big-endian (most significant
+ *  byte first) order.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryIn {
+    private static final int EOF = -1;   // end of file
+
+    private final BufferedInputStream in;  // the input stream
+    private int buffer;                    // one byte buffer
+    private int n;                         // number of bits left in buffer, 0 until the next byte is needed
+    private long taken;                    // number of bytes taken from the input stream
+
+    /**
+     * Initializes a binary input stream from standard input.
+     */
+    public BinaryIn() {
+        this(System.in);
+    }
+
+    /**
+     * Initializes a binary input stream from an {@code InputStream}.
+     *
+     * @param is the {@code InputStream} object
+     */
+    public BinaryIn(InputStream is) {
+        in = new BufferedInputStream(is);
+    }
+
+    private void fillBuffer() {
+        try {
+            buffer = in.read();
+            n = 8;
+            if (buffer != EOF) taken++;
+        }
+        catch (IOException e) {
+            System.err.println("EOF");
+            buffer = EOF;
+            n = -1;
+        }
+    }
+
+    /**
+     * Returns true if this binary input stream is empty.
+     * @return {@code true} if this binary input stream is empty;
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        // the next byte is only read once it is needed, so that reading the last bits
+        // of a byte never waits on a stream that has nothing more to send yet
+        if (n == 0) fillBuffer();
+        return buffer == EOF;
+    }
+
+    /**
+     * Returns the next 8 bits of this binary input stream without consuming them.
+     *
+     * @return the next byte as an {@code int} between 0 and 255
+     * @throws NoSuchElementException if this binary input stream is empty
+     * @throws IllegalStateException if this binary input stream is not byte-aligned
+     */
+    public int peek() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        if (n != 8) throw new IllegalStateException("Peeking at a stream that is not byte-aligned");
+        return buffer;
+    }
+
+    /**
+     * Returns the number of bits read from this binary input stream so far, so that
+     * a stream opened at byte {@code bitPosition() / 8} of the same input can skip
+     * {@code bitPosition() % 8} bits and carry on from the same place.
+     *
+     * @return the number of bits read so far
+     */
+    public long bitPosition() {
+        // the bits left in the buffered byte are still to come
+        return buffer == EOF ? 8 * taken : 8 * taken - n;
+    }
+
+    /**
+     * Skips the rest of the current byte, so that the next read starts on a byte boundary.
+     * This undoes the padding written by {@link BinaryOut#alignToByte()}.
+     */
+    public void alignToByte() {
+        if (n < 8) n = 0;
+    }
+
+    /**
+     * Reads the next bit of data from this binary input stream and return as a boolean.
+     *
+     * @return the next bit of data from this binary input stream as a {@code boolean}
+     * @throws NoSuchElementException if this binary input stream is empty
+     */
+    public boolean readBoolean() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        n--;
+        boolean bit = ((buffer >> n) & 1) == 1;
+        return bit;
+    }
+
+    /**
+     * Reads the next 8 bits from this binary input stream and return as an 8-bit char.
+     *
+     * @return the next 8 bits of data from this binary input stream as a {@code char}
+     * @throws NoSuchElementException if there are fewer than 8 bits available
+     */
+    public char readChar() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+
+        // special case when aligned byte
+        if (n == 8) {
+            int x = buffer;
+            n = 0;
+            return (char) (x & 0xff);
+        }
+
+        // combine last n bits of current buffer with first 8-n bits of new buffer
+        int x = buffer;
+        x <<= (8 - n);
+        int oldN = n;
+        n = 0;
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        n = oldN;
+        x |= (buffer >>> n);
+        return (char) (x & 0xff);
+    }
+
+    /**
+     * Reads the remaining bytes of data from this binary input stream and return as a string.
+     *
+     * @return the remaining bytes of data from this binary input stream as a {@code String}
+     * @throws NoSuchElementException if this binary input stream is empty or if the number of bits
+     *         available is not a multiple of 8 (byte-aligned)
+     */
+    public String readString() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+
+        byte[] bytes = readAllBytes();
+        if (!isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        // each byte becomes the 8-bit char with the same value
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads up to {@code len} bytes from this binary input stream into the given array.
+     * When the input is byte-aligned the bytes are copied straight from the
+     * underlying stream; otherwise they are shifted into place in bulk.
+     *
+     * @param  b the array to read into
+     * @param  off the index of the first byte to fill
+     * @param  len the maximum number of bytes to read
+     * @return the number of bytes read, which is less than {@code len} only
+     *         when fewer than {@code len} whole bytes were left
+     * @throws IndexOutOfBoundsException if the range is not inside {@code b}
+     * @throws IllegalStateException if the underlying stream can't be read
+     */
+    public int readBytes(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0 || isEmpty()) return 0;
+
+        // special case when aligned byte: the buffered byte, then the stream as is
+        if (n == 8) {
+            b[off] = (byte) buffer;
+            int count = 1 + readFully(b, off + 1, len - 1);
+            n = 0;
+            return count;
+        }
+
+        // read the raw bytes into place, then combine the last n bits of each
+        // byte with the first 8-n bits of the one after it
+        int count = readFully(b, off, len);
+        int prev = buffer;
+        for (int i = off; i < off + count; i++) {
+            int cur = b[i] & 0xff;
+            b[i] = (byte) ((prev << (8 - n)) | (cur >>> n));
+            prev = cur;
+        }
+        buffer = prev;
+        return count;
+    }
+
+    /**
+     * Reads the remaining whole bytes of data from this binary input stream.
+     *
+     * @return the remaining bytes of this binary input stream
+     */
+    public byte[] readAllBytes() {
+        byte[] b = new byte[8192];
+        int size = 0;
+        while (!isEmpty()) {
+            if (size == b.length) b = Arrays.copyOf(b, 2 * b.length);
+            int count = readBytes(b, size, b.length - size);
+            if (count == 0) break;
+            size += count;
+        }
+        return Arrays.copyOf(b, size);
+    }
+
+    // read from the underlying stream until len bytes were read or it runs out,
+    // passing read errors on instead of taking them for the end of the input
+    private int readFully(byte[] b, int off, int len) {
+        try {
+            int count = in.readNBytes(b, off, len);
+            taken += count;
+            return count;
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not read BinaryIn", e);
+        }
+    }
+
+    /**
+     * Reads the next 32 bits from this binary input stream and return as a 32-bit int.
+     *
+     * @return the next 32 bits of data from this binary input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than 32 bits available
+     */
+    public int readInt() {
+        int x = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = readChar();
+            x <<= 8;
+            x |= c;
+        }
+        return x;
+    }
+
+    /**
+     * Reads the next 64 bits from this binary input stream and return as a 64-bit long.
+     *
+     * @return the next 64 bits of data from this binary input stream as a {@code long}
+     * @throws NoSuchElementException if there are fewer than 64 bits available
+     */
+    public long readLong() {
+        long x = readInt();
+        return (x << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads the next <em>r</em> bits from this binary input stream return as an <em>r</em>-bit int.
+     *
+     * @param  r number of bits to read
+     * @return the next {@code r} bits of data from this binary input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than r bits available
+     * @throws IllegalArgumentException unless {@code 1 <= r <= 32}
+     */
+    public int readInt(int r) {
+        if (r < 1 || r > 32) throw new IllegalArgumentException("Illegal value of r = " + r);
+
+        // optimize r = 32 case
+        if (r == 32) return readInt();
+
+        // take as many bits as are left in the buffer at a time, instead of one bit at a time
+        int x = 0;
+        while (r > 0) {
+            if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+            int bits = Math.min(n, r);
+            n -= bits;
+            r -= bits;
+            x = (x << bits) | ((buffer >>> n) & ((1 << bits) - 1));
+        }
+        return x;
+    }
+
+    /**
+     * Reads the next 8 bits from this binary input stream and return as an 8-bit byte.
+     *
+     * @return the next 8 bits of data from this binary input stream as a {@code byte}
+     * @throws NoSuchElementException if there are fewer than 8 bits available
+     */
+    public byte readByte() {
+        char c = readChar();
+        return (byte) (c & 0xff);
+    }
+}
@@ -0,0 +1,285 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryOut.java
+ *  Execution:    java BinaryOut
+ *  Dependencies: none
+ *
+ *  Write binary data to an output stream, either one 1-bit boolean,
+ *  one 8-bit char, one 32-bit int, or an r-bit int at a time.
+ *
+ *  The bytes written are not aligned.
+ *
+ ******************************************************************************/
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *  The <code>BinaryOut</code> data type provides a basic capability for
+ *  converting primitive type variables ({@code boolean}, {@code byte},
+ *  {@code char}, and {@code int}) to sequences of bits and writing them
+ *  to an output stream. It is the instance counterpart of {@link BinaryStdOut},
+ *  so that several compressed streams (for example in-memory ones) can be
+ *  written at the same time.
+ *  Uses big-endian (most-significant byte first).
+ *  <p>
+ *  The client must {@code flush()} the output stream when finished writing bits.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryOut {
+    private final BufferedOutputStream out;  // the output stream
+    private int buffer;                      // 8-bit buffer of bits to write out
+    private int n;                           // number of bits remaining in buffer
+    private boolean error;                   // whether a write to the output stream has failed
+
+    /**
+     * Initializes a binary output stream from standard output.
+     */
+    public BinaryOut() {
+        this(System.out);
+    }
+
+    /**
+     * Initializes a binary output stream from an {@code OutputStream}.
+     * @param os the {@code OutputStream}
+     */
+    public BinaryOut(OutputStream os) {
+        out = new BufferedOutputStream(os);
+    }
+
+    /**
+     * Writes the specified bit to the binary output stream.
+     */
+    private void writeBit(boolean bit) {
+        // add bit to buffer
+        buffer <<= 1;
+        if (bit) buffer |= 1;
+
+        // if buffer is full (8 bits), write out as a single byte
+        n++;
+        if (n == 8) clearBuffer();
+    }
+
+    /**
+     * Writes the 8-bit byte to the binary output stream.
+     */
+    private void writeByte(int x) {
+        assert x >= 0 && x < 256;
+
+        // optimized if byte-aligned
+        if (n == 0) {
+            try {
+                out.write(x);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                error = true;
+            }
+            return;
+        }
+
+        // otherwise write one bit at a time
+        for (int i = 0; i < 8; i++) {
+            boolean bit = ((x >>> (8 - i - 1)) & 1) == 1;
+            writeBit(bit);
+        }
+    }
+
+    // write out any remaining bits in buffer to the binary output stream, padding with 0s
+    private void clearBuffer() {
+        if (n == 0) return;
+        if (n > 0) buffer <<= (8 - n);
+        try {
+            out.write(buffer);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            error = true;
+        }
+        n = 0;
+        buffer = 0;
+    }
+
+    /**
+     * Pads the bits written so far with 0s up to the next byte boundary,
+     * without flushing the underlying stream.
+     */
+    public void alignToByte() {
+        clearBuffer();
+    }
+
+    /**
+     * Flushes the binary output stream, padding 0s if number of bits written so far
+     * is not a multiple of 8.
+     */
+    public void flush() {
+        clearBuffer();
+        try {
+            out.flush();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            error = true;
+        }
+    }
+
+    /**
+     * Flushes the binary output stream and tells whether any write to the output
+     * stream has failed, since the write methods don't throw {@code IOException}.
+     * @return {@code true} if a write, flush or close has failed
+     */
+    public boolean checkError() {
+        flush();
+        return error;
+    }
+
+    /**
+     * Flushes and closes the binary output stream.
+     * Once it is closed, bits can no longer be written.
+     */
+    public void close() {
+        flush();
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            error = true;
+        }
+    }
+
+    /**
+     * Writes the specified bit to the binary output stream.
+     * @param x the {@code boolean} to write
+     */
+    public void write(boolean x) {
+        writeBit(x);
+    }
+
+    /**
+     * Writes the 8-bit byte to the binary output stream.
+     * @param x the {@code byte} to write
+     */
+    public void write(byte x) {
+        writeByte(x & 0xff);
+    }
+
+    /**
+     * Writes the 32-bit int to the binary output stream.
+     * @param x the {@code int} to write
+     */
+    public void write(int x) {
+        writeByte((x >>> 24) & 0xff);
+        writeByte((x >>> 16) & 0xff);
+        writeByte((x >>>  8) & 0xff);
+        writeByte((x >>>  0) & 0xff);
+    }
+
+    /**
+     * Writes the 64-bit long to the binary output stream.
+     * @param x the {@code long} to write
+     */
+    public void write(long x) {
+        write((int) (x >>> 32));
+        write((int) x);
+    }
+
+    /**
+     * Writes the <em>r</em>-bit int to the binary output stream.
+     * @param x the {@code int} to write
+     * @param r the number of relevant bits in the int
+     * @throws IllegalArgumentException unless {@code r} is between 1 and 32
+     * @throws IllegalArgumentException unless {@code x} is between 0 and 2<sup>r</sup> - 1
+     */
+    public void write(int x, int r) {
+        if (r == 32) {
+            write(x);
+            return;
+        }
+        if (r < 1 || r > 32)        throw new IllegalArgumentException("Illegal value for r = " + r);
+        if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
+
+        // move as many bits as still fit in the buffer at a time, instead of one bit at a time
+        while (r > 0) {
+            int bits = Math.min(8 - n, r);
+            r -= bits;
+            buffer = (buffer << bits) | ((x >>> r) & ((1 << bits) - 1));
+            n += bits;
+            if (n == 8) clearBuffer();
+        }
+    }
+
+    /**
+     * Writes the 8-bit char to the binary output stream.
+     * @param x the {@code char} to write
+     * @throws IllegalArgumentException unless {@code x} is between 0 and 255
+     */
+    public void write(char x) {
+        if (x < 0 || x >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + x);
+        writeByte(x);
+    }
+
+    /**
+     * Writes the string of 8-bit characters to the binary output stream.
+     * @param s the {@code String} to write.
+     * @throws IllegalArgumentException if any character in the string is not
+     * between 0 and 255.
+     */
+    public void write(String s) {
+        // convert a chunk of chars at a time and write each chunk in bulk
+        byte[] chunk = new byte[Math.min(s.length(), 8192)];
+        for (int i = 0; i < s.length(); i += chunk.length) {
+            int len = Math.min(chunk.length, s.length() - i);
+            for (int j = 0; j < len; j++) {
+                char c = s.charAt(i + j);
+                if (c >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + c);
+                chunk[j] = (byte) c;
+            }
+            write(chunk, 0, len);
+        }
+    }
+
+    /**
+     * Writes the given range of bytes to the binary output stream.
+     * When the output is byte-aligned the bytes go straight to the underlying
+     * stream; otherwise they are shifted onto the buffered bits in bulk.
+     * @param b the bytes to write.
+     * @param off the index of the first byte to write.
+     * @param len the number of bytes to write.
+     * @throws IndexOutOfBoundsException if the range is not inside {@code b}.
+     */
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+
+        // optimized if byte-aligned
+        if (n == 0) {
+            try {
+                out.write(b, off, len);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                error = true;
+            }
+            return;
+        }
+
+        // otherwise merge the n buffered bits with the first 8-n bits of each byte
+        byte[] merged = new byte[Math.min(len, 8192)];
+        for (int i = 0; i < len; i += merged.length) {
+            int count = Math.min(merged.length, len - i);
+            for (int j = 0; j < count; j++) {
+                int x = b[off + i + j] & 0xff;
+                merged[j] = (byte) ((buffer << (8 - n)) | (x >>> n));
+                buffer = x & ((1 << n) - 1);
+            }
+            try {
+                out.write(merged, 0, count);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                error = true;
+            }
+        }
+    }
+}
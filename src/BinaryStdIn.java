@@ -12,6 +12,8 @@
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -162,17 +164,83 @@ public final class BinaryStdIn {
      *
      * @return the remaining bytes of data from standard input as a {@code String}
      * @throws NoSuchElementException if standard input is empty or if the number of bits
-     *         available on standard input is not a multiple of 8 (byte-aligned)
+     *         available is not a multiple of 8 (byte-aligned)
      */
     public static String readString() {
         if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
 
-        StringBuilder sb = new StringBuilder();
+        byte[] bytes = readAllBytes();
+        if (n != 8 && !isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        // each byte becomes the 8-bit char with the same value
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads up to {@code len} bytes from standard input into the given array.
+     * When the input is byte-aligned the bytes are copied straight from the
+     * underlying stream; otherwise they are shifted into place in bulk.
+     *
+     * @param  b the array to read into
+     * @param  off the index of the first byte to fill
+     * @param  len the maximum number of bytes to read
+     * @return the number of bytes read, which is less than {@code len} only
+     *         when fewer than {@code len} whole bytes were left
+     * @throws IndexOutOfBoundsException if the range is not inside {@code b}
+     * @throws IllegalStateException if the underlying stream can't be read
+     */
+    public static int readBytes(byte[] b, int off, int len) {
+        if (!isInitialized) initialize();
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0 || isEmpty()) return 0;
+
+        // special case when aligned byte: the buffered byte, then the stream as is
+        if (n == 8) {
+            b[off] = (byte) buffer;
+            int count = 1 + readFully(b, off + 1, len - 1);
+            fillBuffer();
+            return count;
+        }
+
+        // read the raw bytes into place, then combine the last n bits of each
+        // byte with the first 8-n bits of the one after it
+        int count = readFully(b, off, len);
+        int prev = buffer;
+        for (int i = off; i < off + count; i++) {
+            int cur = b[i] & 0xff;
+            b[i] = (byte) ((prev << (8 - n)) | (cur >>> n));
+            prev = cur;
+        }
+        buffer = prev;
+        return count;
+    }
+
+    /**
+     * Reads the remaining whole bytes of data from standard input.
+     *
+     * @return the remaining bytes of standard input
+     */
+    public static byte[] readAllBytes() {
+        if (!isInitialized) initialize();
+        byte[] b = new byte[8192];
+        int size = 0;
         while (!isEmpty()) {
-            char c = readChar();
-            sb.append(c);
+            if (size == b.length) b = Arrays.copyOf(b, 2 * b.length);
+            int count = readBytes(b, size, b.length - size);
+            if (count == 0) break;
+            size += count;
+        }
+        return Arrays.copyOf(b, size);
+    }
+
+    // read from the underlying stream until len bytes were read or it runs out,
+    // passing read errors on instead of taking them for the end of the input
+    private static int readFully(byte[] b, int off, int len) {
+        try {
+            return in.readNBytes(b, off, len);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not read BinaryStdIn", e);
         }
-        return sb.toString();
     }
 
 
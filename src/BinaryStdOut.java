@@ -257,8 +257,59 @@ public final class BinaryStdOut {
      * between 0 and 255.
      */
     public static void write(String s) {
-        for (int i = 0; i < s.length(); i++)
-            write(s.charAt(i));
+        // convert a chunk of chars at a time and write each chunk in bulk
+        byte[] chunk = new byte[Math.min(s.length(), 8192)];
+        for (int i = 0; i < s.length(); i += chunk.length) {
+            int len = Math.min(chunk.length, s.length() - i);
+            for (int j = 0; j < len; j++) {
+                char c = s.charAt(i + j);
+                if (c >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + c);
+                chunk[j] = (byte) c;
+            }
+            write(chunk, 0, len);
+        }
+    }
+
+    /**
+     * Writes the given range of bytes to standard output.
+     * When the output is byte-aligned the bytes go straight to the underlying
+     * stream; otherwise they are shifted onto the buffered bits in bulk.
+     * @param b the bytes to write.
+     * @param off the index of the first byte to write.
+     * @param len the number of bytes to write.
+     * @throws IndexOutOfBoundsException if the range is not inside {@code b}.
+     */
+    public static void write(byte[] b, int off, int len) {
+        if (!isInitialized) initialize();
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+
+        // optimized if byte-aligned
+        if (n == 0) {
+            try {
+                out.write(b, off, len);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // otherwise merge the n buffered bits with the first 8-n bits of each byte
+        byte[] merged = new byte[Math.min(len, 8192)];
+        for (int i = 0; i < len; i += merged.length) {
+            int count = Math.min(merged.length, len - i);
+            for (int j = 0; j < count; j++) {
+                int x = b[off + i + j] & 0xff;
+                merged[j] = (byte) ((buffer << (8 - n)) | (x >>> n));
+                buffer = x & ((1 << n) - 1);
+            }
+            try {
+                out.write(merged, 0, count);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
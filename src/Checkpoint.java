@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * The {@code Checkpoint} class is a snapshot of an {@link LZWEncoder} or {@link LZWDecoder}
+ * taken between two codes, together with how far the job had got in its input and output.
+ * A job that is stopped can start again from its last checkpoint instead of from the start,
+ * and writes the same bytes it would have written without stopping.
+ * <p>
+ * Between blocks there is no dictionary to keep. Inside a block, the dictionary is kept as
+ * one edge per code: the code of its prefix in {@code width} bits and its last symbol, in
+ * 16 bits in word mode and 8 bits otherwise. In word mode the words of the block come first.
+ *
+ * @author Stevie K. Halprin
+ */
+public class Checkpoint {
+
+    // First byte of a checkpoint, so that a stream header can't be mistaken for one
+    private static final int MAGIC = 0xC7;
+
+    public final CompressionSettings settings;
+    // Whether the stream is in the original format, which has no header and no RECORD code
+    public final boolean legacy;
+    // Number of whole bytes of the input that had been read, and bits of the byte after them
+    public final long inputOffset;
+    public final int inputBits;
+    // Number of bytes of the output that had been written
+    public final long outputOffset;
+    // Number of chars of text in the open block, or -1 if the snapshot was taken between blocks
+    public final long blockChars;
+    // Number of chars of the open stored block that were still to be copied
+    public final int storedLeft;
+    // Next code the open block would have added, and the code read just before the snapshot,
+    // or EMPTY at the start of a block or record
+    public final int nextCode;
+    public final int previous;
+    // Words of the open block in word mode, or null
+    public final TokenTable words;
+    // Edges of the codes from phraseStart() up to nextCode
+    private final int[] prefix;
+    private final char[] last;
+
+    /**
+     * Creates a checkpoint of an encoder, which only stops between records or blocks.
+     * @param settings The settings of the stream.
+     * @param inputOffset The number of input bytes that had been read.
+     * @param outputOffset The number of output bytes that had been written.
+     * @param blockChars The number of chars of text in the open block, or -1 between blocks.
+     * @param nextCode The next code of the open block.
+     * @param prefix The prefix code of every code from {@code FIRST_CODE} up to nextCode.
+     * @param last The last char of every code from {@code FIRST_CODE} up to nextCode.
+     */
+    public Checkpoint(CompressionSettings settings, long inputOffset, long outputOffset,
+                      long blockChars, int nextCode, int[] prefix, char[] last) {
+        this(settings, false, inputOffset, 0, outputOffset, blockChars, 0, nextCode, TST.EMPTY, null, prefix, last);
+    }
+
+    /**
+     * Creates a checkpoint of a decoder, which may stop after any code.
+     * @param settings The settings of the stream.
+     * @param legacy Whether the stream is in the original format.
+     * @param inputOffset The number of whole input bytes that had been read.
+     * @param inputBits The number of bits of the next input byte that had been read.
+     * @param outputOffset The number of output bytes that had been written.
+     * @param blockChars The number of chars of text in the open block, or -1 between blocks.
+     * @param storedLeft The number of chars of the open stored block still to be copied.
+     * @param nextCode The next code of the open block.
+     * @param previous The code read just before the snapshot, or EMPTY.
+     * @param words The words of the open block in word mode, or null.
+     * @param prefix The prefix code of every code from {@link #phraseStart()} up to nextCode.
+     * @param last The last symbol of every code from {@link #phraseStart()} up to nextCode.
+     * @throws IllegalArgumentException if an open block of word mode has no words, or a block without them does.
+     */
+    public Checkpoint(CompressionSettings settings, boolean legacy, long inputOffset, int inputBits, long outputOffset,
+                      long blockChars, int storedLeft, int nextCode, int previous, TokenTable words,
+                      int[] prefix, char[] last) {
+        boolean inBlock = blockChars >= 0;
+        if (inBlock && settings.words != (words != null))
+            throw new IllegalArgumentException("Open blocks have words in word mode only");
+        this.settings = settings;
+        this.legacy = legacy;
+        this.inputOffset = inputOffset;
+        this.inputBits = inputBits;
+        this.outputOffset = outputOffset;
+        this.blockChars = blockChars;
+        this.storedLeft = storedLeft;
+        this.words = inBlock ? words : null;
+        this.nextCode = inBlock ? nextCode : phraseStart();
+        this.previous = inBlock ? previous : TST.EMPTY;
+        this.prefix = Arrays.copyOf(prefix, this.nextCode);
+        this.last = Arrays.copyOf(last, this.nextCode);
+    }
+
+    /**
+     * @return whether an LZW block was open when the snapshot was taken, so that its dictionary was kept.
+     */
+    public boolean inBlock() {
+        return blockChars >= 0;
+    }
+
+    /**
+     * @return the first code of the open block that stands for a phrase of more than one symbol.
+     */
+    public int phraseStart() {
+        return firstCode(legacy) + (words == null ? 0 : words.size());
+    }
+
+    public int prefix(int code) {
+        return prefix[code];
+    }
+
+    public char last(int code) {
+        return last[code];
+    }
+
+    // First code after the single chars and the codes that aren't phrases
+    private static int firstCode(boolean legacy) {
+        return legacy ? TextCompressor.R + 1 : TextCompressor.FIRST_CODE;
+    }
+
+    /**
+     * Writes the checkpoint.
+     * @param out The stream to write to.
+     */
+    public void write(BinaryOut out) {
+        out.write(MAGIC, 8);
+        out.write(legacy ? 1 : 0, 8);
+        // The original format has no header, and always has the default settings
+        if (!legacy) settings.write(out);
+        out.write(inputOffset);
+        out.write(inputBits, 8);
+        out.write(outputOffset);
+        out.write(blockChars);
+        out.write(storedLeft);
+        out.write(nextCode);
+        out.write(previous);
+        if (words != null) words.write(out);
+        int symbolBits = settings.words ? 16 : 8;
+        for (int code = phraseStart(); code < nextCode; code++) {
+            out.write(prefix[code], settings.width);
+            out.write(last[code], symbolBits);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #write(BinaryOut)}.
+     * @param in The stream to read from.
+     * @return the checkpoint.
+     * @throws IllegalArgumentException if the stream does not hold a valid checkpoint.
+     */
+    public static Checkpoint read(BinaryIn in) {
+        if (in.readInt(8) != MAGIC) throw new IllegalArgumentException("Not a checkpoint");
+        int format = in.readInt(8);
+        if (format > 1) throw new IllegalArgumentException("Illegal checkpoint");
+        boolean legacy = format == 1;
+        CompressionSettings settings = legacy ? CompressionSettings.DEFAULT : CompressionSettings.read(in);
+        long inputOffset = in.readLong();
+        int inputBits = in.readInt(8);
+        long outputOffset = in.readLong();
+        long blockChars = in.readLong();
+        int storedLeft = in.readInt();
+        int nextCode = in.readInt();
+        int previous = in.readInt();
+        TokenTable words = blockChars >= 0 && settings.words ? TokenTable.read(in) : null;
+
+        int firstCode = firstCode(legacy);
+        int phraseStart = firstCode + (words == null ? 0 : words.size());
+        if (inputOffset < 0 || inputBits > 7 || outputOffset < 0 || storedLeft < 0
+                || nextCode < phraseStart || nextCode > settings.maxCodes
+                || (previous != TST.EMPTY && !isCode(previous, nextCode, firstCode)))
+            throw new IllegalArgumentException("Illegal checkpoint");
+
+        int symbolBits = settings.words ? 16 : 8;
+        int[] prefix = new int[nextCode];
+        char[] last = new char[nextCode];
+        for (int code = phraseStart; code < nextCode; code++) {
+            prefix[code] = in.readInt(settings.width);
+            last[code] = (char) in.readInt(symbolBits);
+            // A prefix is a symbol or an earlier code, and a last symbol is a symbol,
+            // or the dictionary couldn't be rebuilt
+            if (!isCode(prefix[code], code, firstCode) || !isCode(last[code], phraseStart, firstCode))
+                throw new IllegalArgumentException("Illegal edge " + prefix[code] + ", " + (int) last[code] + " of code " + code);
+        }
+        return new Checkpoint(settings, legacy, inputOffset, inputBits, outputOffset, blockChars, storedLeft,
+                nextCode, previous, words, prefix, last);
+    }
+
+    // Whether the code is a single char, or a word symbol or phrase below the given end
+    private static boolean isCode(int code, int end, int firstCode) {
+        return (code >= 0 && code < TextCompressor.R) || (code >= firstCode && code < end);
+    }
+}
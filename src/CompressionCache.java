@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code CompressionCache} class remembers the results of {@link TextCompressor#compress(byte[])}
+ * (or {@link TextCompressor#expand(byte[])}) so that identical payloads are only worked on once.
+ * Entries are addressed by an xxHash64 of their content together with its length, and the least
+ * recently used entries are evicted once the cached bytes go over the memory budget.
+ *
+ * @author Stevie K. Halprin
+ */
+public class CompressionCache {
+
+    // Rough per-entry cost of the key, map node and two array headers, charged against the budget
+    private static final int ENTRY_OVERHEAD = 96;
+
+    // Primes used by xxHash64
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Each Key holds the content hash and length of a cached input. Both are compared before the
+     * stored input itself, so a hash collision can never return the wrong result.
+     */
+    private static final class Key {
+        final long hash;
+        final int length;
+
+        Key(long hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && length == k.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + length;
+        }
+    }
+
+    /**
+     * Each Entry keeps the input it was computed from next to the result.
+     */
+    private static final class Entry {
+        final byte[] input;
+        final byte[] output;
+
+        Entry(byte[] input, byte[] output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        long size() {
+            return input.length + output.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final UnaryOperator<byte[]> function;
+    private final long budget;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache in front of the given function.
+     * @param function The function whose results are cached, such as {@code TextCompressor::compress}.
+     * @param budget The maximum number of bytes the cached entries may take up.
+     */
+    public CompressionCache(UnaryOperator<byte[]> function, long budget) {
+        if (budget < 0) throw new IllegalArgumentException("Illegal memory budget = " + budget);
+        this.function = function;
+        this.budget = budget;
+    }
+
+    /**
+     * Creates a cache of compressed outputs.
+     * @param budget The maximum number of bytes the cached entries may take up.
+     * @return a cache whose {@code apply} compresses its input.
+     */
+    public static CompressionCache forCompress(long budget) {
+        return new CompressionCache(TextCompressor::compress, budget);
+    }
+
+    /**
+     * Creates a cache of expanded outputs.
+     * @param budget The maximum number of bytes the cached entries may take up.
+     * @return a cache whose {@code apply} expands its input.
+     */
+    public static CompressionCache forExpand(long budget) {
+        return new CompressionCache(TextCompressor::expand, budget);
+    }
+
+    /**
+     * Returns the cached result for the given input, computing and caching it on a miss.
+     * The returned array is shared with the cache and must not be modified.
+     * @param input The bytes to compress or expand.
+     * @return the result of the cached function on the input.
+     */
+    public byte[] apply(byte[] input) {
+        Key key = new Key(hash(input, 0, input.length, 0), input.length);
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && Arrays.equals(e.input, input)) {
+                hits++;
+                return e.output;
+            }
+            misses++;
+        }
+
+        // Do the work outside the lock so that other threads can still hit the cache
+        byte[] output = function.apply(input);
+        Entry e = new Entry(input.clone(), output);
+        if (e.size() > budget) return output;
+
+        synchronized (this) {
+            Entry old = entries.put(key, e);
+            if (old != null) size -= old.size();
+            size += e.size();
+            evict();
+        }
+        return output;
+    }
+
+    // Drop least recently used entries until the cache fits in its budget again
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (size > budget && it.hasNext()) {
+            size -= it.next().getValue().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes every entry from the cache. The counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of bytes currently charged against the budget.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there have been none.
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses (%.2f%% hit rate), %d evictions, %d/%d bytes",
+                hits, misses, 100 * hitRate(), evictions, size, budget);
+    }
+
+    /**
+     * Computes the xxHash64 of the given range of bytes.
+     * @param b The bytes to hash.
+     * @param off The index of the first byte.
+     * @param len The number of bytes to hash.
+     * @param seed The hash seed.
+     * @return the 64-bit hash.
+     */
+    public static long hash(byte[] b, int off, int len, long seed) {
+        int end = off + len;
+        long h;
+
+        if (len >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, (long) LONG_LE.get(b, off));
+                v2 = round(v2, (long) LONG_LE.get(b, off + 8));
+                v3 = round(v3, (long) LONG_LE.get(b, off + 16));
+                v4 = round(v4, (long) LONG_LE.get(b, off + 24));
+                off += 32;
+            } while (off <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        }
+        else {
+            h = seed + PRIME5;
+        }
+        h += len;
+
+        // Mix in the tail, 8 then 4 then 1 bytes at a time
+        for (; off + 8 <= end; off += 8) {
+            h ^= round(0, (long) LONG_LE.get(b, off));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (off + 4 <= end) {
+            h ^= ((int) INT_LE.get(b, off) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            off += 4;
+        }
+        for (; off < end; off++) {
+            h ^= (b[off] & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        // Final avalanche
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    /**
+     * Compresses each file given on the command line twice through a cache and prints its counters.
+     *
+     * @param args the files to compress
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        CompressionCache cache = forCompress(64L << 20);
+        for (int round = 0; round < 2; round++) {
+            for (String file : args) {
+                byte[] data = Files.readAllBytes(Path.of(file));
+                long start = System.nanoTime();
+                byte[] compressed = cache.apply(data);
+                long time = System.nanoTime() - start;
+                System.out.printf("%-20s %8d -> %8d bytes in %8.3f ms%n", file, data.length, compressed.length, time / 1e6);
+            }
+        }
+        System.out.println(cache);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * The {@code CompressionSettings} class holds the parameters of a framed LZW stream:
+ * the width of each code, the maximum number of codes, how much input goes into each
+ * block before the dictionary is reset, which dictionary engine builds the codes, and
+ * whether the codes are built over words rather than single chars.
+ * The settings are written to the header of the stream so that {@code expand()} can
+ * follow them without being told.
+ *
+ * @author Stevie K. Halprin
+ */
+public class CompressionSettings {
+
+    // Dictionary engine backed by the TST class
+    public static final int ENGINE_TST = 0;
+    // Dictionary engine backed by the HashDictionary class
+    public static final int ENGINE_HASH = 1;
+
+    // Bit of the engine byte of the header that is set when the codes are built over words
+    private static final int WORDS_FLAG = 0x80;
+
+    // Smallest width that can still hold every 8-bit char and the EOF code
+    public static final int MIN_WIDTH = 9;
+    public static final int MAX_WIDTH = 24;
+
+    // Settings equivalent to the original format, with a single block
+    public static final CompressionSettings DEFAULT =
+            new CompressionSettings(TextCompressor.WIDTH, 0, ENGINE_TST);
+
+    // Settings for streams of records, whose size isn't known up front. A wide dictionary
+    // learns the repeated parts of many records, and is started over every few MB
+    public static final CompressionSettings RECORDS =
+            new CompressionSettings(16, 1 << 22, ENGINE_TST);
+
+    public final int width;
+    public final int maxCodes;
+    // Number of input chars per block, or 0 for a single block
+    public final int blockSize;
+    public final int engine;
+    // Whether each block starts with a table of its repeated words, which are then coded as single symbols
+    public final boolean words;
+
+    /**
+     * Creates settings that use every code the width can represent, with codes built over single chars.
+     * @param width The number of bits in each code.
+     * @param blockSize The number of input chars per block (a power of 2 above 1), or 0 for a single block.
+     * @param engine The dictionary engine.
+     */
+    public CompressionSettings(int width, int blockSize, int engine) {
+        this(width, blockSize, engine, false);
+    }
+
+    /**
+     * Creates settings that use every code the width can represent.
+     * @param width The number of bits in each code.
+     * @param blockSize The number of input chars per block (a power of 2 above 1), or 0 for a single block.
+     * @param engine The dictionary engine.
+     * @param words Whether the codes are built over the words of each block rather than single chars.
+     */
+    public CompressionSettings(int width, int blockSize, int engine, boolean words) {
+        if (width < MIN_WIDTH || width > MAX_WIDTH)
+            throw new IllegalArgumentException("Illegal code width = " + width);
+        if (blockSize != 0 && (blockSize < 2 || Integer.bitCount(blockSize) != 1))
+            throw new IllegalArgumentException("Illegal block size = " + blockSize);
+        if (engine != ENGINE_TST && engine != ENGINE_HASH)
+            throw new IllegalArgumentException("Illegal engine = " + engine);
+        this.width = width;
+        this.maxCodes = 1 << width;
+        this.blockSize = blockSize;
+        this.engine = engine;
+        this.words = words;
+    }
+
+    /**
+     * Writes these settings as the header of a framed stream.
+     * @param out The stream to write to.
+     */
+    public void write(BinaryOut out) {
+        out.write(TextCompressor.MAGIC, 8);
+        out.write(width, 8);
+        // Block sizes are powers of 2, so only the exponent is stored
+        out.write(blockSize == 0 ? 0 : Integer.numberOfTrailingZeros(blockSize), 8);
+        out.write(words ? engine | WORDS_FLAG : engine, 8);
+    }
+
+    /**
+     * Reads the settings from the header of a framed stream.
+     * @param in The stream to read from.
+     * @return the settings the stream was written with.
+     * @throws IllegalArgumentException if the stream does not start with a valid header.
+     */
+    public static CompressionSettings read(BinaryIn in) {
+        int magic = in.readInt(8);
+        if (magic != TextCompressor.MAGIC) throw new IllegalArgumentException("Not a framed stream");
+        int width = in.readInt(8);
+        int blockShift = in.readInt(8);
+        int engine = in.readInt(8);
+        boolean words = (engine & WORDS_FLAG) != 0;
+        if (blockShift > 30) throw new IllegalArgumentException("Illegal block size = 2^" + blockShift);
+        return new CompressionSettings(width, blockShift == 0 ? 0 : 1 << blockShift, engine & ~WORDS_FLAG, words);
+    }
+
+    /**
+     * Parses a size given on the command line, such as 4096, 512K, 64M or 20G.
+     * @param s The size, with an optional K, M or G suffix for powers of 1024.
+     * @return the number of bytes.
+     * @throws IllegalArgumentException if the size is negative or doesn't fit in a long.
+     */
+    public static long parseSize(String s) {
+        char unit = Character.toUpperCase(s.charAt(s.length() - 1));
+        int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+        long size = Long.parseLong(shift > 0 ? s.substring(0, s.length() - 1) : s);
+        if (size < 0 || size > Long.MAX_VALUE >> shift) throw new IllegalArgumentException("Illegal size = " + s);
+        return size << shift;
+    }
+
+    /**
+     * Parses a block size given on the command line, like {@link #parseSize(String)}.
+     * @param s The block size, with an optional K, M or G suffix for powers of 1024.
+     * @return the number of chars per block.
+     * @throws IllegalArgumentException if the block size doesn't fit in an int.
+     */
+    public static int parseBlockSize(String s) {
+        long size = parseSize(s);
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Illegal block size = " + s);
+        return (int) size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompressionSettings)) return false;
+        CompressionSettings that = (CompressionSettings) o;
+        return width == that.width && blockSize == that.blockSize && engine == that.engine && words == that.words;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((width * 31 + blockSize) * 31 + engine) * 2 + (words ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "width=" + width + " maxCodes=" + maxCodes
+                + " blockSize=" + (blockSize == 0 ? "all" : blockSize) + " engine=" + engine + (words ? " words" : "");
+    }
+}
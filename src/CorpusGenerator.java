@@ -0,0 +1,255 @@
+/******************************************************************************
+ *  Compilation:  javac CorpusGenerator.java
+ *  Execution:    java CorpusGenerator kind size [seed] > output
+ *  Dependencies: CompressionSettings.java
+ *  Data files:   alice.txt (what the markov kind is trained on)
+ *
+ *  Writes a reproducible synthetic corpus of the given kind (markov, logs,
+ *  random or runs) and size, such as 512K, 64M or 20G, to standard output.
+ *
+ *  % java CorpusGenerator markov 1M 7 | java TextCompressor - | java DumpBinary 0
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code CorpusGenerator} class is an {@code InputStream} of synthetic text that is
+ * made as it is read, so corpora far larger than memory can be compressed and checked.
+ * The same kind, size and seed always give the same bytes. The kinds are:
+ * <ul>
+ *   <li>{@code markov}: English-like text from a char model of order at least {@code ORDER} trained on a sample text</li>
+ *   <li>{@code logs}: log lines that repeat a few templates with changing timestamps, ids and durations</li>
+ *   <li>{@code random}: uniformly random bytes, which nothing can compress</li>
+ *   <li>{@code runs}: long runs of a single char, which make the deepest TST paths and
+ *       hit the KwKwK case of {@code expand()} on almost every code</li>
+ * </ul>
+ *
+ * @author Stevie K. Halprin
+ */
+public class CorpusGenerator extends InputStream {
+
+    public static final String[] KINDS = {"markov", "logs", "random", "runs"};
+
+    // Number of chars of context the markov kind picks the next char by
+    public static final int ORDER = 4;
+    // log2 of the number of buckets the contexts of the markov model are hashed into
+    private static final int MODEL_BITS = 20;
+    // Most chars the markov kind copies from the training text before picking a new place by the context
+    private static final int MAX_COPY = 8;
+    // Longest run of the runs kind
+    private static final int MAX_RUN = 1 << 20;
+
+    private static final String[] LEVELS = {"INFO ", "INFO ", "INFO ", "DEBUG", "WARN ", "ERROR"};
+    // Messages of the logs kind, each split around the 3 numbers that change from line to line
+    private static final String[][] TEMPLATES = {
+            {"GET /api/items/", " 200 ", "ms user=u", ""},
+            {"POST /api/orders 201 ", "ms order=", " user=u", ""},
+            {"cache miss for key item:", ", loaded in ", "ms (shard ", ")"},
+            {"connection pool at ", "/", ", waited ", "ms"},
+            {"retrying request ", " after timeout of ", "ms (attempt ", ")"},
+    };
+    private static final int[] TEMPLATE_BOUNDS = {100_000, 2_000, 10_000};
+
+    private final String kind;
+    private final long size;
+    private final SplittableRandom random;
+
+    // Bytes made but not read yet are chunk[pos, limit)
+    private final byte[] chunk = new byte[1 << 16];
+    private int pos;
+    private int limit;
+    // Number of bytes made so far
+    private long made;
+
+    // Markov model: the training text, and for each context bucket the positions in it that
+    // follow the context, as positions[bucketStarts[b], bucketStarts[b + 1])
+    private byte[] training;
+    private int[] bucketStarts;
+    private int[] positions;
+    // The last ORDER chars made, packed into an int
+    private int context;
+
+    // Logs: milliseconds since the epoch of the current line
+    private long time = 1_700_000_000_000L;
+
+    // Runs: the number of chars left in the current run, and its char
+    private int runLeft;
+    private byte runChar;
+
+    /**
+     * Creates a generator of the given kind. The markov kind is trained on {@code alice.txt}.
+     * @param kind One of {@link #KINDS}.
+     * @param size The number of bytes to make.
+     * @param seed The seed of the random choices.
+     * @throws IOException if the markov kind can't read its training text.
+     */
+    public CorpusGenerator(String kind, long size, long seed) throws IOException {
+        this(kind, size, seed, kind.equals("markov") ? Files.readAllBytes(Path.of("alice.txt")) : null);
+    }
+
+    /**
+     * Creates a generator of the given kind.
+     * @param kind One of {@link #KINDS}.
+     * @param size The number of bytes to make.
+     * @param seed The seed of the random choices.
+     * @param training The text the markov kind learns from, of more than {@code ORDER} bytes; unused by the other kinds.
+     * @throws IllegalArgumentException if the kind is unknown or the size is negative.
+     */
+    public CorpusGenerator(String kind, long size, long seed, byte[] training) {
+        if (!Arrays.asList(KINDS).contains(kind)) throw new IllegalArgumentException("Illegal corpus kind = " + kind);
+        if (size < 0) throw new IllegalArgumentException("Illegal corpus size = " + size);
+        this.kind = kind;
+        this.size = size;
+        this.random = new SplittableRandom(seed);
+        if (kind.equals("markov")) train(training);
+    }
+
+    // Sort the positions after every context of the training text into the bucket of that context
+    private void train(byte[] text) {
+        if (text == null || text.length <= ORDER)
+            throw new IllegalArgumentException("Training text must be longer than " + ORDER + " bytes");
+        training = text;
+        int buckets = 1 << MODEL_BITS;
+        bucketStarts = new int[buckets + 1];
+        int count = text.length - ORDER;
+        for (int i = 0; i < count; i++)
+            bucketStarts[bucket(pack(text, i)) + 1]++;
+        for (int b = 0; b < buckets; b++)
+            bucketStarts[b + 1] += bucketStarts[b];
+        int[] next = Arrays.copyOf(bucketStarts, buckets);
+        positions = new int[count];
+        for (int i = 0; i < count; i++)
+            positions[next[bucket(pack(text, i))]++] = i + ORDER;
+        context = pack(text, 0);
+    }
+
+    // The ORDER chars of text starting at index i, packed into an int
+    private static int pack(byte[] text, int i) {
+        int key = 0;
+        for (int j = i; j < i + ORDER; j++)
+            key = (key << 8) | (text[j] & 0xFF);
+        return key;
+    }
+
+    private static int bucket(int key) {
+        return (key * 0x9E3779B9) >>> (32 - MODEL_BITS);
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) return -1;
+        return chunk[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        int count = 0;
+        while (count < len && fill()) {
+            int n = Math.min(len - count, limit - pos);
+            System.arraycopy(chunk, pos, b, off + count, n);
+            pos += n;
+            count += n;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    // Make the next chunk once the current one has been read, returning false once size bytes were made
+    private boolean fill() {
+        if (pos < limit) return true;
+        if (made == size) return false;
+        int n = (int) Math.min(chunk.length, size - made);
+        switch (kind) {
+            case "markov" -> markov(n);
+            case "logs" -> logs(n);
+            case "random" -> random(n);
+            default -> runs(n);
+        }
+        pos = 0;
+        limit = n;
+        made += n;
+        return true;
+    }
+
+    // Jump to a random occurrence of the current context in the training text, and copy
+    // a few of the chars after it, which picks each of them by a context of at least ORDER chars
+    private void markov(int n) {
+        int i = 0;
+        while (i < n) {
+            int b = bucket(context);
+            int from = bucketStarts[b];
+            int count = bucketStarts[b + 1] - from;
+            // A context only seen at the very end of the training text has nothing after it,
+            // so start over from a random place
+            int p = count == 0 ? random.nextInt(training.length) : positions[from + random.nextInt(count)];
+            int stop = Math.min(n, i + Math.min(1 + random.nextInt(MAX_COPY), training.length - p));
+            while (i < stop) {
+                int c = training[p++] & 0xFF;
+                chunk[i++] = (byte) c;
+                context = (context << 8) | c;
+            }
+        }
+    }
+
+    // Write whole log lines into the chunk, cutting the last one off where the chunk ends.
+    // The rest of a cut-off line is lost, which keeps every chunk independent of the next
+    private void logs(int n) {
+        int i = 0;
+        StringBuilder line = new StringBuilder(128);
+        while (i < n) {
+            time += random.nextInt(250);
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(time)).append(' ')
+                .append(LEVELS[random.nextInt(LEVELS.length)])
+                .append(" [worker-").append(random.nextInt(16)).append("] ");
+            String[] template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            for (int j = 0; j < TEMPLATE_BOUNDS.length; j++)
+                line.append(template[j]).append(random.nextInt(TEMPLATE_BOUNDS[j]));
+            line.append(template[TEMPLATE_BOUNDS.length]).append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.ISO_8859_1);
+            int count = Math.min(bytes.length, n - i);
+            System.arraycopy(bytes, 0, chunk, i, count);
+            i += count;
+        }
+    }
+
+    private void random(int n) {
+        for (int i = 0; i < n; i += 8) {
+            long bits = random.nextLong();
+            for (int j = i; j < Math.min(n, i + 8); j++, bits >>>= 8)
+                chunk[j] = (byte) bits;
+        }
+    }
+
+    // Fill the chunk with runs of a letter, each up to MAX_RUN long, that carry over between chunks
+    private void runs(int n) {
+        int i = 0;
+        while (i < n) {
+            if (runLeft == 0) {
+                runLeft = 1 + random.nextInt(MAX_RUN);
+                runChar = (byte) ('a' + random.nextInt(4));
+            }
+            int count = Math.min(runLeft, n - i);
+            Arrays.fill(chunk, i, i + count, runChar);
+            i += count;
+            runLeft -= count;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        CorpusGenerator corpus = new CorpusGenerator(args[0], CompressionSettings.parseSize(args[1]), seed);
+        OutputStream out = System.out;
+        corpus.transferTo(out);
+        out.flush();
+    }
+}
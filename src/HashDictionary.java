@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * The {@code HashDictionary} class is an LZW dictionary that only stores the edges
+ * "code of a phrase + next char -> code of the longer phrase", in an open-addressing
+ * hash table with linear probing. Each edge costs one slot of a {@code long[]} and an
+ * {@code int[]} rather than a TST Node per char, so it scales to dictionaries of
+ * millions of codes.
+ *
+ * @author Stevie K. Halprin
+ */
+public class HashDictionary implements LZWDictionary {
+
+    // Key of a slot that holds no edge; real keys are never negative
+    private static final long FREE = -1;
+
+    // For each slot: the prefix code shifted past the char, or FREE, and the code of the edge
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    // Slots filled since the last clear, so clearing costs the number of edges rather than the table size
+    private final int[] used;
+    private int size;
+    // Code of the phrase found by the last call to longestMatch
+    private int matched = TST.EMPTY;
+
+    /**
+     * Creates a dictionary with room for the given number of codes, keeping the table at
+     * most half full so that probe sequences stay short.
+     * @param maxCodes The maximum number of codes that will be added.
+     */
+    public HashDictionary(int maxCodes) {
+        int capacity = Integer.highestOneBit(Math.max(maxCodes, 2) - 1) << 2;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        used = new int[maxCodes];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * @return the maximum number of codes this dictionary has room for.
+     */
+    public int maxCodes() {
+        return used.length;
+    }
+
+    /**
+     * Removes every phrase longer than a single char.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            keys[used[i]] = FREE;
+        size = 0;
+        matched = TST.EMPTY;
+    }
+
+    private static long key(int code, char c) {
+        return ((long) code << 16) | c;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    // Return the code of the edge from code along c, or EMPTY if there is none
+    private int child(int code, char c) {
+        long key = key(code, c);
+        for (int i = slot(key); keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+        }
+        return TST.EMPTY;
+    }
+
+    @Override
+    public long longestMatch(String s, int start, int end) {
+        // A single char is its own code, so every match is at least one char long
+        int code = s.charAt(start);
+        int i = start + 1;
+        while (i < end) {
+            int next = child(code, s.charAt(i));
+            if (next == TST.EMPTY) break;
+            code = next;
+            i++;
+        }
+        matched = code;
+        return ((long) (i - start) << 32) | code;
+    }
+
+    @Override
+    public void insertAfterMatch(char c, int code) {
+        long key = key(matched, c);
+        int i = slot(key);
+        while (keys[i] != FREE && keys[i] != key)
+            i = (i + 1) & mask;
+        if (keys[i] == FREE) {
+            if (size == used.length) throw new IllegalStateException("Dictionary is full");
+            used[size++] = i;
+        }
+        keys[i] = key;
+        values[i] = code;
+    }
+
+    @Override
+    public void exportEdges(int[] prefix, char[] last) {
+        for (int i = 0; i < size; i++) {
+            long key = keys[used[i]];
+            int code = values[used[i]];
+            prefix[code] = (int) (key >>> 16);
+            last[code] = (char) key;
+        }
+    }
+
+    @Override
+    public void importEdges(int[] prefix, char[] last, int from, int to) {
+        for (int code = from; code < to; code++) {
+            matched = prefix[code];
+            insertAfterMatch(last[code], code);
+        }
+        matched = TST.EMPTY;
+    }
+
+    @Override
+    public long cacheHits() {
+        return 0;
+    }
+
+    @Override
+    public long cacheMisses() {
+        return 0;
+    }
+}
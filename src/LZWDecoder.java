@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code LZWDecoder} class reads the blocks of a framed LZW stream, or the single
+ * block of a stream in the original format.
+ * Instead of a map from codes to Strings, every code is stored as the code of its
+ * prefix plus one char, so each new code costs a few array slots.
+ * Blocks can be expanded whole, one code at a time with {@link #next(BinaryIn)}, or in
+ * two phases whose second phase runs in parallel with {@link #decodeBlockParallel(BinaryIn)}.
+ * In word mode, the symbols of a phrase are spelled out first, then each word symbol
+ * is replaced with its chars from the block's word table.
+ *
+ * @author Stevie K. Halprin
+ */
+public class LZWDecoder {
+
+    private final CompressionSettings settings;
+    // Code of the first phrase longer than one char, which is past RECORD in framed streams only
+    private final int firstCode;
+
+    // For each code above R: the code of the phrase without its last char, and that last char.
+    // These tables start small and double as codes are added, up to settings.maxCodes
+    private int[] prefix;
+    private char[] last;
+    // For each code: the first char and the length of its phrase
+    private char[] first;
+    private int[] length;
+    // Number of codes the tables start out with
+    private static final int INITIAL_CODES = 1 << 12;
+    // Number of codes each task of the parallel phase of decodeBlockParallel spells out
+    private static final int CHUNK_CODES = 1 << 14;
+
+    // Buffer the phrases are spelled out into, back to front, which grows with the tables and in word mode
+    private byte[] phrase;
+    // In word mode: the words of the current block, and the buffer the symbols of a phrase are spelled out into
+    private TokenTable words;
+    private char[] symbols;
+    // Code of the first phrase of the current block made of more than one symbol
+    private int phraseStart;
+    // Integer representing next available code for a String
+    private int nextCode;
+    // Code read before the current one, or EMPTY at the start of a block or record
+    private int previous;
+    // Number of chars the open block has spelled out, or -1 if no block is open
+    private long blockChars = -1;
+
+    public LZWDecoder(CompressionSettings settings) {
+        this(settings, TextCompressor.FIRST_CODE);
+    }
+
+    private LZWDecoder(CompressionSettings settings, int firstCode) {
+        this.settings = settings;
+        this.firstCode = firstCode;
+        int capacity = Math.min(settings.maxCodes, INITIAL_CODES);
+        prefix = new int[capacity];
+        last = new char[capacity];
+        first = new char[capacity];
+        length = new int[capacity];
+        phrase = new byte[capacity];
+        for (int c = 0; c < TextCompressor.R; c++) {
+            first[c] = (char) c;
+            length[c] = 1;
+        }
+    }
+
+    /**
+     * Creates a decoder that carries on from a checkpoint taken by {@link #checkpoint}.
+     * @param checkpoint The checkpoint to carry on from.
+     */
+    public LZWDecoder(Checkpoint checkpoint) {
+        this(checkpoint.settings, checkpoint.legacy ? TextCompressor.R + 1 : TextCompressor.FIRST_CODE);
+        if (!checkpoint.inBlock()) return;
+        startBlock(checkpoint.words);
+        for (int code = phraseStart; code < checkpoint.nextCode; code++)
+            add(checkpoint.prefix(code), checkpoint.last(code));
+        previous = checkpoint.previous;
+        blockChars = checkpoint.blockChars;
+    }
+
+    /**
+     * Takes a snapshot of the decoder between two codes, once the phrase of the last one
+     * has been written out.
+     * @param inputOffset The number of whole compressed bytes the job has read so far.
+     * @param inputBits The number of bits of the next compressed byte the job has read.
+     * @param outputOffset The number of bytes the job has written so far, after flushing.
+     * @param storedLeft The number of chars of the stored block the job is copying that are still to be copied.
+     * @return the checkpoint.
+     */
+    public Checkpoint checkpoint(long inputOffset, int inputBits, long outputOffset, int storedLeft) {
+        return new Checkpoint(settings, firstCode != TextCompressor.FIRST_CODE, inputOffset, inputBits, outputOffset,
+                blockChars, storedLeft, nextCode, previous, words, prefix, last);
+    }
+
+    /**
+     * @return whether a block has been started and its end hasn't been read yet.
+     */
+    public boolean inBlock() {
+        return blockChars >= 0;
+    }
+
+    /**
+     * Creates a decoder for the original format, which has 12-bit codes, no RECORD code,
+     * and no header or block types.
+     * @return a decoder whose blocks are expanded exactly as {@code expand()} expands the original format.
+     */
+    public static LZWDecoder legacy() {
+        return new LZWDecoder(CompressionSettings.DEFAULT, TextCompressor.R + 1);
+    }
+
+    /**
+     * Expands one LZW block, whose block type has already been read.
+     * The text of each record in the block is flushed as soon as its RECORD code arrives.
+     * @param in The stream to read the codes from.
+     * @param out The stream to write the text to.
+     */
+    public void decodeBlock(BinaryIn in, BinaryOut out) {
+        startBlock(in);
+        int length;
+        while ((length = next(in)) >= 0) {
+            // Flush at the end of a record, in case the next record hasn't been sent yet
+            if (length == 0) out.flush();
+            else out.write(phrase, 0, length);
+        }
+    }
+
+    /**
+     * Expands one LZW block in two phases, after its block type has been read. The first phase
+     * reads the codes and rebuilds the dictionary tables without spelling out any phrase, noting
+     * where the phrase of each code starts in the text. Once the tables are complete, the
+     * second phase spells out the phrases straight into their places in parallel, since
+     * no phrase depends on the text of another.
+     * @param in The stream to read the codes from.
+     * @return the text of the block, without any record boundaries.
+     * @throws IllegalArgumentException if a code has not been defined yet.
+     * @throws IllegalStateException in word mode, or if the text would not fit in an array.
+     */
+    public byte[] decodeBlockParallel(BinaryIn in) {
+        if (settings.words) throw new IllegalStateException("Word mode can't be decoded in parallel");
+        startBlock(in);
+
+        // Phase 1: the codes that have text, and the index in the text of each one's phrase
+        int[] codes = new int[1 << 12];
+        int[] offsets = new int[codes.length];
+        int count = 0;
+        long size = 0;
+        while (true) {
+            int code = in.readInt(settings.width);
+            if (code == TextCompressor.EOF) break;
+            if (code == TextCompressor.RECORD && firstCode > TextCompressor.RECORD) {
+                in.alignToByte();
+                previous = TST.EMPTY;
+                continue;
+            }
+            if (previous != TST.EMPTY && nextCode < settings.maxCodes) {
+                if (code > nextCode) throw new IllegalArgumentException("Illegal code = " + code);
+                char c = code == nextCode ? first[previous] : first[code];
+                add(previous, c);
+            }
+            else if (code >= nextCode) {
+                throw new IllegalArgumentException("Illegal code = " + code);
+            }
+            previous = code;
+
+            if (count == codes.length) {
+                codes = Arrays.copyOf(codes, 2 * count);
+                offsets = Arrays.copyOf(offsets, 2 * count);
+            }
+            codes[count] = code;
+            offsets[count] = (int) size;
+            count++;
+            size += length[code];
+            if (size > Integer.MAX_VALUE - 8) throw new IllegalStateException("Text is too long for an array");
+        }
+        in.alignToByte();
+        previous = TST.EMPTY;
+        blockChars = -1;
+
+        // Phase 2: every phrase is written back to front from its end, following the finished tables
+        byte[] text = new byte[(int) size];
+        int[] blockCodes = codes;
+        int[] blockOffsets = offsets;
+        int codeCount = count;
+        IntStream.range(0, (count + CHUNK_CODES - 1) / CHUNK_CODES).parallel().forEach(chunk -> {
+            int stop = Math.min(codeCount, (chunk + 1) * CHUNK_CODES);
+            for (int i = chunk * CHUNK_CODES; i < stop; i++) {
+                int code = blockCodes[i];
+                int j = blockOffsets[i] + length[code];
+                while (code >= phraseStart) {
+                    text[--j] = (byte) last[code];
+                    code = prefix[code];
+                }
+                text[--j] = (byte) code;
+            }
+        });
+        return text;
+    }
+
+    /**
+     * Starts a new block with only the single chars in the dictionary, plus the words
+     * of the block in word mode. Call this after reading a block type of {@code BLOCK_LZW},
+     * before the first {@link #next(BinaryIn)}.
+     * @param in The stream to read the word table from.
+     */
+    public void startBlock(BinaryIn in) {
+        startBlock(settings.words ? TokenTable.read(in) : null);
+    }
+
+    // Start a block with the given words, or none outside word mode
+    private void startBlock(TokenTable blockWords) {
+        nextCode = firstCode;
+        previous = TST.EMPTY;
+        blockChars = 0;
+        if (blockWords != null) {
+            // Each word is a symbol whose code is its own char, like the single chars
+            words = blockWords;
+            if (firstCode + words.size() > Math.min(settings.maxCodes, 1 << 16))
+                throw new IllegalArgumentException("Too many words = " + words.size());
+            if (symbols == null) symbols = new char[prefix.length];
+            for (int i = 0; i < words.size(); i++) {
+                if (nextCode == prefix.length) grow();
+                first[nextCode] = (char) nextCode;
+                length[nextCode] = 1;
+                nextCode++;
+            }
+        }
+        phraseStart = nextCode;
+    }
+
+    /**
+     * Reads the next code of the current block and spells out its phrase into {@link #phrase()}.
+     * @param in The stream to read the codes from.
+     * @return the length of the phrase, 0 if the code ended a record, or -1 if it ended the block.
+     * @throws IllegalArgumentException if the code has not been defined yet.
+     */
+    public int next(BinaryIn in) {
+        int code = in.readInt(settings.width);
+        if (code == TextCompressor.EOF) {
+            in.alignToByte();
+            previous = TST.EMPTY;
+            blockChars = -1;
+            return -1;
+        }
+        if (code == TextCompressor.RECORD && firstCode > TextCompressor.RECORD) {
+            in.alignToByte();
+            previous = TST.EMPTY;
+            return 0;
+        }
+
+        if (previous != TST.EMPTY && nextCode < settings.maxCodes) {
+            // The previous phrase plus the first char of this one is the next code.
+            // If this code is that very code, its first char is the previous phrase's.
+            if (code > nextCode) throw new IllegalArgumentException("Illegal code = " + code);
+            char c = code == nextCode ? first[previous] : first[code];
+            add(previous, c);
+        }
+        else if (code >= nextCode) {
+            throw new IllegalArgumentException("Illegal code = " + code);
+        }
+        previous = code;
+        int length = spell(code);
+        blockChars += length;
+        return length;
+    }
+
+    /**
+     * Returns the buffer holding the phrase of the last code read by {@link #next(BinaryIn)},
+     * starting at index 0. It is reused by every code, and holds at most {@code settings.maxCodes} chars.
+     * @return the phrase buffer.
+     */
+    public byte[] phrase() {
+        return phrase;
+    }
+
+    // Add the phrase of code p plus char c as the next code
+    private void add(int p, char c) {
+        if (nextCode == prefix.length) grow();
+        prefix[nextCode] = p;
+        last[nextCode] = c;
+        first[nextCode] = first[p];
+        length[nextCode] = length[p] + 1;
+        nextCode++;
+    }
+
+    // Double the tables, and the buffers a phrase is spelled out into, since a phrase
+    // has at most one more symbol than there are codes
+    private void grow() {
+        int capacity = Math.min(settings.maxCodes, 2 * prefix.length);
+        prefix = Arrays.copyOf(prefix, capacity);
+        last = Arrays.copyOf(last, capacity);
+        first = Arrays.copyOf(first, capacity);
+        length = Arrays.copyOf(length, capacity);
+        if (phrase.length < capacity) phrase = Arrays.copyOf(phrase, capacity);
+        if (symbols != null) symbols = Arrays.copyOf(symbols, capacity);
+    }
+
+    // Spell out the phrase of the code into the phrase buffer by following its prefixes,
+    // and return its length
+    private int spell(int code) {
+        if (words != null) return spellWords(code);
+        int len = length[code];
+        int i = len;
+        while (code >= phraseStart) {
+            phrase[--i] = (byte) last[code];
+            code = prefix[code];
+        }
+        phrase[--i] = (byte) code;
+        return len;
+    }
+
+    // Spell out the symbols of the phrase, then the chars of each symbol
+    private int spellWords(int code) {
+        int len = length[code];
+        int i = len;
+        while (code >= phraseStart) {
+            symbols[--i] = last[code];
+            code = prefix[code];
+        }
+        symbols[--i] = (char) code;
+
+        int n = 0;
+        for (i = 0; i < len; i++) {
+            if (n + TokenTable.MAX_LENGTH > phrase.length)
+                phrase = Arrays.copyOf(phrase, 2 * phrase.length + TokenTable.MAX_LENGTH);
+            char symbol = symbols[i];
+            if (symbol < TextCompressor.R) phrase[n++] = (byte) symbol;
+            else n = words.copy(symbol - firstCode, phrase, n);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * The {@code LZWDictionary} interface is what {@link LZWEncoder} needs from a dictionary
+ * engine: find the longest known phrase at a position of the input, then add that phrase
+ * plus the char after it as a new code. Single chars are always their own codes.
+ *
+ * @author Stevie K. Halprin
+ */
+public interface LZWDictionary {
+
+    /**
+     * Finds the longest phrase in the dictionary that is a prefix of s.substring(start, end).
+     * @param s The String to match against.
+     * @param start The index of the first character to match.
+     * @param end The index after the last character that may be matched.
+     * @return the length of the match in the upper 32 bits and its code in the lower 32 bits.
+     */
+    long longestMatch(String s, int start, int end);
+
+    /**
+     * Adds the phrase found by the last call to {@link #longestMatch} followed by the char c.
+     * @param c The char to extend the last match with.
+     * @param code The code for the extended phrase.
+     */
+    void insertAfterMatch(char c, int code);
+
+    /**
+     * Copies out every phrase longer than a single symbol as an edge from its prefix: for the
+     * phrase with code k, prefix[k] is the code of the phrase without its last char, and last[k] is that char.
+     * @param prefix The array to fill with prefix codes, indexed by code.
+     * @param last The array to fill with last chars, indexed by code.
+     */
+    void exportEdges(int[] prefix, char[] last);
+
+    /**
+     * Adds the phrases with codes from up to to from their edges, as {@link #exportEdges} fills them in.
+     * The prefix of each phrase must be a single symbol or a phrase with a lower code.
+     * @param prefix The prefix codes, indexed by code.
+     * @param last The last chars, indexed by code.
+     * @param from The first code to add.
+     * @param to The code after the last one to add.
+     */
+    void importEdges(int[] prefix, char[] last, int from, int to);
+
+    /**
+     * @return the number of matches answered by a cache in front of the dictionary, or 0 if it has none.
+     */
+    long cacheHits();
+
+    /**
+     * @return the number of matches the cache in front of the dictionary could not answer, or 0 if it has none.
+     */
+    long cacheMisses();
+}
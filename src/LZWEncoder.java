@@ -0,0 +1,343 @@
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The {@code LZWEncoder} class writes the blocks of a framed LZW stream.
+ * Each block starts with a fresh dictionary, ends with the EOF code and is padded
+ * to a byte boundary, so that blocks can be told apart without decoding them.
+ * Blocks that LZW would make larger are stored as they are instead.
+ * In word mode, each block starts with a table of its repeated words, and LZW runs over
+ * a string of symbols in which each of those words is a single char.
+ *
+ * @author Stevie K. Halprin
+ */
+public class LZWEncoder {
+
+    // log2 of the number of slots in the hot-phrase cache of each block's TST
+    public static final int DEFAULT_CACHE_BITS = 12;
+    // Bytes a stored block takes besides its chars: the 32-bit length
+    private static final int STORED_HEADER = 4;
+    // Blocks whose chars carry more bits of entropy each than this are stored without trying LZW
+    public static final double MAX_ENTROPY = 7.8;
+
+    private final CompressionSettings settings;
+    private final BinaryOut out;
+    private final int cacheBits;
+
+    // Dictionary holding all the value codes associated with each added character sequence
+    private LZWDictionary codes;
+    // Hash engine kept between blocks, so its large tables are cleared rather than reallocated
+    private HashDictionary hash;
+    // Integer representing next available code for a String
+    private int nextCode;
+    // Number of blocks written as they are, because LZW wouldn't have shrunk them
+    private long storedBlocks;
+    // Number of chars in the record block being written, or -1 if no record block is open
+    private long recordChars = -1;
+    // Hot-phrase cache counters of the blocks written so far
+    private long cacheHits;
+    private long cacheMisses;
+
+    public LZWEncoder(CompressionSettings settings, BinaryOut out) {
+        this(settings, out, DEFAULT_CACHE_BITS);
+    }
+
+    /**
+     * @param settings The settings to compress with.
+     * @param out The stream to write to.
+     * @param cacheBits The log2 of the number of hot-phrase cache slots, or 0 to look every match up in the TST.
+     */
+    public LZWEncoder(CompressionSettings settings, BinaryOut out, int cacheBits) {
+        this.settings = settings;
+        this.out = out;
+        this.cacheBits = cacheBits;
+    }
+
+    /**
+     * Creates an encoder that carries on from a checkpoint, writing the same codes the
+     * encoder it was taken from would have written next.
+     * @param checkpoint The checkpoint to carry on from.
+     * @param out The stream to write to, positioned at {@code checkpoint.outputOffset}.
+     * @throws IllegalArgumentException if the checkpoint was taken while expanding.
+     */
+    public LZWEncoder(Checkpoint checkpoint, BinaryOut out) {
+        this(checkpoint.settings, out);
+        if (checkpoint.legacy || checkpoint.storedLeft > 0 || checkpoint.previous != TST.EMPTY)
+            throw new IllegalArgumentException("Checkpoint of a decoder");
+        if (!checkpoint.inBlock()) return;
+        reset(settings.blockSize == 0 ? Integer.MAX_VALUE : settings.blockSize, 0);
+        int[] prefix = new int[checkpoint.nextCode];
+        char[] last = new char[checkpoint.nextCode];
+        for (int code = TextCompressor.FIRST_CODE; code < checkpoint.nextCode; code++) {
+            prefix[code] = checkpoint.prefix(code);
+            last[code] = checkpoint.last(code);
+        }
+        codes.importEdges(prefix, last, TextCompressor.FIRST_CODE, checkpoint.nextCode);
+        nextCode = checkpoint.nextCode;
+        recordChars = checkpoint.blockChars;
+    }
+
+    /**
+     * Takes a snapshot of the encoder between two blocks or records, when everything it has
+     * written is byte-aligned. Only a block of records keeps its dictionary open in between.
+     * @param inputOffset The number of input bytes the job has compressed so far.
+     * @param outputOffset The number of bytes the job has written so far, after flushing.
+     * @return the checkpoint.
+     */
+    public Checkpoint checkpoint(long inputOffset, long outputOffset) {
+        int[] prefix = new int[nextCode];
+        char[] last = new char[nextCode];
+        if (recordChars >= 0) codes.exportEdges(prefix, last);
+        return new Checkpoint(settings, inputOffset, outputOffset, recordChars, nextCode, prefix, last);
+    }
+
+    // Start a new dictionary holding only the single chars and the given number of word symbols,
+    // for a block of the given number of symbols
+    private void reset(int blockLength, int words) {
+        if (codes != null) {
+            cacheHits += codes.cacheHits();
+            cacheMisses += codes.cacheMisses();
+        }
+        if (settings.engine == CompressionSettings.ENGINE_HASH) {
+            // Single chars are implicit in the hash engine, and a block can't add more codes than it has chars
+            int codesNeeded = Math.min(settings.maxCodes - TextCompressor.FIRST_CODE - words, blockLength);
+            if (hash == null || hash.maxCodes() < codesNeeded) hash = new HashDictionary(codesNeeded);
+            else hash.clear();
+            codes = hash;
+        }
+        else {
+            TST tst = new TST();
+            // Blocks much shorter than the cache wouldn't win back the time it takes to allocate
+            if (cacheBits > 0 && blockLength >= 4 << cacheBits) tst.enableCache(cacheBits);
+            insertChars(tst, 0, TextCompressor.R);
+            insertChars(tst, TextCompressor.FIRST_CODE, TextCompressor.FIRST_CODE + words);
+            codes = tst;
+        }
+        nextCode = TextCompressor.FIRST_CODE + words;
+    }
+
+    // Insert the chars in [lo, hi) middle first, each with itself as its code, so the top
+    // of the TST is balanced instead of a chain of 256 right links
+    private static void insertChars(TST tst, int lo, int hi) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        tst.insert("" + (char) mid, mid);
+        insertChars(tst, lo, mid);
+        insertChars(tst, mid + 1, hi);
+    }
+
+    /**
+     * Compresses the whole text, split into blocks of {@code settings.blockSize} chars.
+     * @param text The text to compress.
+     */
+    public void encode(String text) {
+        int blockSize = settings.blockSize == 0 ? Math.max(text.length(), 1) : settings.blockSize;
+        for (int start = 0; start < text.length(); start += blockSize)
+            encodeBlock(text, start, Math.min(text.length(), start + blockSize));
+    }
+
+    /**
+     * Compresses text.substring(start, end) as one LZW block.
+     * @param text The text holding the block.
+     * @param start The index of the first char of the block.
+     * @param end The index after the last char of the block.
+     */
+    public void encodeBlock(String text, int start, int end) {
+        // Chars spread almost evenly over all 256 values, as in already-compressed
+        // or random data, leave LZW nothing to find
+        if (entropy(text, start, end) > MAX_ENTROPY) {
+            encodeStored(text, start, end);
+            return;
+        }
+
+        // Write the block aside, giving up as soon as its codes take more room than storing it
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut block = new BinaryOut(bytes);
+        block.write(TextCompressor.BLOCK_LZW, 8);
+        long maxBits = 8L * (STORED_HEADER + end - start) - settings.width;
+        // Without words, the symbols are the chars themselves
+        String symbols = text;
+        int from = start;
+        int to = end;
+        int wordCount = 0;
+        if (settings.words) {
+            // Code the symbols after the table that spells out their words
+            TokenTable tokens = new TokenTable();
+            int[] ids = tokenize(text, start, end, tokens);
+            int[] symbolOf = new int[tokens.size()];
+            TokenTable words = chooseWords(tokens, symbolOf);
+            words.write(block);
+            maxBits -= words.bits();
+            symbols = toSymbols(ids, tokens, symbolOf, end - start);
+            from = 0;
+            to = symbols.length();
+            wordCount = words.size();
+        }
+        reset(to - from, wordCount);
+        if (!encodeCodes(block, symbols, from, to, maxBits)) {
+            encodeStored(text, start, end);
+            return;
+        }
+        block.write(TextCompressor.EOF, settings.width);
+        block.flush();
+        out.write(bytes.toByteArray(), 0, bytes.size());
+    }
+
+    /**
+     * Writes text.substring(start, end) as a stored block: its length, then its chars as they are.
+     * @param text The text holding the block.
+     * @param start The index of the first char of the block.
+     * @param end The index after the last char of the block.
+     */
+    public void encodeStored(String text, int start, int end) {
+        out.write(TextCompressor.BLOCK_STORED, 8);
+        out.write(end - start);
+        out.write(text.substring(start, end));
+        storedBlocks++;
+    }
+
+    // Split text.substring(start, end) into tokens, interning its words and whitespace runs,
+    // and return each token as its id, or as -1 - c for a token that is the single char c
+    private static int[] tokenize(String text, int start, int end, TokenTable tokens) {
+        int[] ids = new int[end - start];
+        int count = 0;
+        for (int i = start; i < end; ) {
+            int stop = TokenTable.tokenEnd(text, i, end);
+            ids[count++] = stop - i > 1 ? tokens.intern(text, i, stop) : -1 - text.charAt(i);
+            i = stop;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // Pick the tokens that save more symbols than they take to spell out, as many as fit while
+    // leaving at least half the codes for phrases. Each one is added to words, and its symbol,
+    // which is its code in the block, is set in symbolOf
+    private TokenTable chooseWords(TokenTable tokens, int[] symbolOf) {
+        // Each use of a token saves length - 1 symbols. Spelling it out costs length raw bytes,
+        // counted as 4 symbols each since LZW would have coded most of its uses as phrases anyway.
+        // Sort by savings, with the id in the low bits so ties keep the order the tokens first appeared in
+        long[] candidates = new long[tokens.size()];
+        int count = 0;
+        for (int id = 0; id < tokens.size(); id++) {
+            long savings = (long) tokens.count(id) * (tokens.length(id) - 1) - 4 * tokens.length(id);
+            if (savings > 0) candidates[count++] = (savings << 32) | (Integer.MAX_VALUE - id);
+        }
+        Arrays.sort(candidates, 0, count);
+        int maxWords = Math.max(0, Math.min(settings.maxCodes / 2, 1 << 16) - TextCompressor.FIRST_CODE);
+        int chosen = Math.min(count, maxWords);
+
+        // Give the chosen tokens new ids in the order they first appeared in
+        int[] ids = new int[chosen];
+        for (int i = 0; i < chosen; i++)
+            ids[i] = Integer.MAX_VALUE - (int) candidates[count - 1 - i];
+        Arrays.sort(ids);
+        Arrays.fill(symbolOf, -1);
+        TokenTable words = new TokenTable();
+        for (int id : ids) {
+            String word = tokens.token(id);
+            symbolOf[id] = TextCompressor.FIRST_CODE + words.intern(word, 0, word.length());
+        }
+        return words;
+    }
+
+    // Spell out the tokens as symbols: the chosen words as their single symbol, and everything else as its chars
+    private static String toSymbols(int[] ids, TokenTable tokens, int[] symbolOf, int length) {
+        char[] symbols = new char[length];
+        int n = 0;
+        for (int id : ids) {
+            if (id < 0) symbols[n++] = (char) (-1 - id);
+            else if (symbolOf[id] >= 0) symbols[n++] = (char) symbolOf[id];
+            else n = tokens.getChars(id, symbols, n);
+        }
+        return new String(symbols, 0, n);
+    }
+
+    // Estimate the bits per char of text.substring(start, end) from how often each char occurs
+    private static double entropy(String text, int start, int end) {
+        int[] counts = new int[TextCompressor.R];
+        for (int i = start; i < end; i++)
+            counts[text.charAt(i) & 0xFF]++;
+        double bits = 0;
+        for (int count : counts) {
+            if (count == 0) continue;
+            double p = (double) count / (end - start);
+            bits -= p * Math.log(p);
+        }
+        return bits / Math.log(2);
+    }
+
+    /**
+     * Compresses text.substring(start, end) as one record and flushes it straight away.
+     * Records share their dictionary until {@code settings.blockSize} chars have gone by,
+     * and each ends with the RECORD code padded to a byte boundary.
+     * @param text The text holding the record.
+     * @param start The index of the first char of the record.
+     * @param end The index after the last char of the record.
+     */
+    public void encodeRecord(String text, int start, int end) {
+        // Start a new block once the current one is full, but never in the middle of a record
+        if (recordChars >= settings.blockSize && settings.blockSize != 0) closeRecords();
+        if (recordChars < 0) {
+            out.write(TextCompressor.BLOCK_LZW, 8);
+            reset(settings.blockSize == 0 ? Integer.MAX_VALUE : settings.blockSize, 0);
+            recordChars = 0;
+        }
+        encodeCodes(out, text, start, end, Long.MAX_VALUE);
+        out.write(TextCompressor.RECORD, settings.width);
+        out.alignToByte();
+        out.flush();
+        recordChars += end - start;
+    }
+
+    // End the open record block, if there is one
+    private void closeRecords() {
+        if (recordChars < 0) return;
+        out.write(TextCompressor.EOF, settings.width);
+        out.alignToByte();
+        recordChars = -1;
+    }
+
+    // Write the codes for text.substring(start, end) using the current dictionary,
+    // returning false as soon as writing them would take more than maxBits
+    private boolean encodeCodes(BinaryOut to, String text, int start, int end, long maxBits) {
+        long maxCodes = maxBits / settings.width;
+        long codesWritten = 0;
+        int index = start;
+        while (index < end) {
+            if (++codesWritten > maxCodes) return false;
+            // Find the code and length of the longest known prefix at the current index
+            long match = codes.longestMatch(text, index, end);
+            int length = (int) (match >>> 32);
+            int code = (int) match;
+            to.write(code, settings.width);
+
+            // Add the prefix plus the next char, as long as there is a next char and a free code
+            if (index + length < end && nextCode < settings.maxCodes) {
+                codes.insertAfterMatch(text.charAt(index + length), nextCode);
+                nextCode++;
+            }
+            index += length;
+        }
+        return true;
+    }
+
+    public long storedBlocks() {
+        return storedBlocks;
+    }
+
+    public long cacheHits() {
+        return cacheHits + (codes == null ? 0 : codes.cacheHits());
+    }
+
+    public long cacheMisses() {
+        return cacheMisses + (codes == null ? 0 : codes.cacheMisses());
+    }
+
+    /**
+     * Writes the marker that ends the stream.
+     */
+    public void finish() {
+        closeRecords();
+        out.write(TextCompressor.BLOCK_END, 8);
+    }
+}
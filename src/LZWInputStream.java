@@ -0,0 +1,226 @@
+/******************************************************************************
+ *  Compilation:  javac LZWInputStream.java
+ *  Execution:    java LZWInputStream n < input.lzw
+ *  Dependencies: BinaryIn.java LZWDecoder.java
+ *
+ *  Writes the first n chars of the text compressed in standard input,
+ *  decoding no more of it than that.
+ *
+ *  % java TextCompressor - < alice.txt | java LZWInputStream 60
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+/**
+ * The {@code LZWInputStream} class is a lazy view of the text inside a compressed stream,
+ * in either the framed or the original format. Codes are only read and decoded as the
+ * text is read, so a reader that stops early only pays for the part it read, and no more
+ * than one phrase or one chunk of a stored block is held at a time. A read of many chars
+ * returns early at the end of a record or block, so the records of a stream that is still
+ * being written are handed over as soon as they arrive. Once the chars decoded so far
+ * have all been read, {@link #checkpoint(long)} takes a snapshot a new view can carry on from.
+ *
+ * @author Stevie K. Halprin
+ */
+public class LZWInputStream extends InputStream {
+
+    // Largest number of chars of a stored block copied at a time
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final InputStream compressed;
+    private final BinaryIn in;
+    // Number of bits of the compressed stream before the part in reads, when carrying on from a checkpoint
+    private long startBits;
+    private LZWDecoder decoder;
+    // Whether the stream is in the original format, which is a single block without a block type
+    private boolean legacy;
+
+    // Chars decoded but not read yet are buffer[pos, limit)
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+
+    // Whether the header has been read
+    private boolean started;
+    // Whether the codes of an LZW block are being read
+    private boolean inBlock;
+    // Number of chars of the current stored block that haven't been copied into the buffer yet
+    private int storedLeft;
+    // Buffer the chars of stored blocks are copied into, allocated once the first one shows up
+    private byte[] chunk;
+    // Whether the end of the stream has been reached
+    private boolean done;
+    // Whether the last thing decoded ended a record or block, after which the compressed stream may pause
+    private boolean boundary;
+
+    /**
+     * Opens a view of the text compressed in the given stream. Nothing is read until the text is.
+     * @param compressed The compressed stream.
+     */
+    public LZWInputStream(InputStream compressed) {
+        this.compressed = compressed;
+        in = new BinaryIn(compressed);
+    }
+
+    /**
+     * Opens a view of the rest of the text compressed in the given stream, from where
+     * a checkpoint taken by {@link #checkpoint(long)} left off.
+     * @param compressed The compressed stream, positioned at byte {@code checkpoint.inputOffset}.
+     * @param checkpoint The checkpoint to carry on from.
+     */
+    public LZWInputStream(InputStream compressed, Checkpoint checkpoint) {
+        this(compressed);
+        startBits = 8 * checkpoint.inputOffset;
+        // The checkpoint may have been taken partway through a byte
+        if (checkpoint.inputBits > 0) in.readInt(checkpoint.inputBits);
+        decoder = new LZWDecoder(checkpoint);
+        legacy = checkpoint.legacy;
+        inBlock = checkpoint.inBlock();
+        storedLeft = checkpoint.storedLeft;
+        started = true;
+    }
+
+    @Override
+    public int read() {
+        if (!fill(false)) return -1;
+        return buffer[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        int count = 0;
+        // Hand over whole phrases while there is room, so a large read isn't split into many calls,
+        // but don't wait past the end of a record or block for more once there are chars to return
+        while (count < len && fill(count > 0)) {
+            int n = Math.min(len - count, limit - pos);
+            System.arraycopy(buffer, pos, b, off + count, n);
+            pos += n;
+            count += n;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    /**
+     * Takes a snapshot of where the view is in the compressed stream and of its decoder.
+     * @param outputOffset The number of chars the job has written so far.
+     * @return the checkpoint.
+     * @throws IllegalStateException if nothing has been read yet, the stream has ended,
+     *         or chars that were decoded haven't been read yet.
+     */
+    public Checkpoint checkpoint(long outputOffset) {
+        if (!started || done) throw new IllegalStateException("Checkpoint outside the text");
+        if (pos < limit) throw new IllegalStateException("Checkpoint before the chars decoded so far were read");
+        long bits = startBits + in.bitPosition();
+        return decoder.checkpoint(bits / 8, (int) (bits % 8), outputOffset, storedLeft);
+    }
+
+    /**
+     * Closes the compressed stream.
+     * @throws IOException if the compressed stream can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compressed.close();
+    }
+
+    // Decode until there are chars left to read, returning false at the end of the stream,
+    // or at the end of a record or block if stopAtBoundary
+    private boolean fill(boolean stopAtBoundary) {
+        while (pos == limit) {
+            if (done || (boundary && stopAtBoundary)) return false;
+            boundary = false;
+            if (!started) start();
+            else if (storedLeft > 0) copyStored();
+            else if (inBlock) decodeCode();
+            // The original format ends with its only block
+            else if (legacy) done = true;
+            else nextBlock();
+        }
+        return true;
+    }
+
+    // Read the header, if there is one, to know how to decode the rest
+    private void start() {
+        started = true;
+        if (in.isEmpty()) {
+            done = true;
+            return;
+        }
+        // Framed streams say how they were compressed in their header
+        if (in.peek() == TextCompressor.MAGIC) {
+            decoder = new LZWDecoder(CompressionSettings.read(in));
+        }
+        else {
+            legacy = true;
+            decoder = LZWDecoder.legacy();
+            decoder.startBlock(in);
+            inBlock = true;
+        }
+    }
+
+    // Decode the next code of the current LZW block into the buffer
+    private void decodeCode() {
+        int length = decoder.next(in);
+        boundary = length <= 0;
+        if (length < 0) {
+            inBlock = false;
+            return;
+        }
+        // Record boundaries don't show up in the text, so RECORD codes just leave the buffer empty
+        buffer = decoder.phrase();
+        pos = 0;
+        limit = length;
+    }
+
+    // Copy the next chunk of the current stored block into the buffer
+    private void copyStored() {
+        if (chunk == null) chunk = new byte[CHUNK_SIZE];
+        int count = in.readBytes(chunk, 0, Math.min(storedLeft, chunk.length));
+        if (count == 0) throw new NoSuchElementException("Reading from empty input stream");
+        storedLeft -= count;
+        boundary = storedLeft == 0;
+        buffer = chunk;
+        pos = 0;
+        limit = count;
+    }
+
+    // Read the type of the next block of a framed stream
+    private void nextBlock() {
+        int type = in.readInt(8);
+        if (type == TextCompressor.BLOCK_END) {
+            done = true;
+        }
+        else if (type == TextCompressor.BLOCK_LZW) {
+            decoder.startBlock(in);
+            inBlock = true;
+        }
+        else if (type == TextCompressor.BLOCK_STORED) {
+            storedLeft = in.readInt();
+            if (storedLeft < 0) throw new IllegalArgumentException("Illegal stored block length = " + storedLeft);
+        }
+        else {
+            throw new IllegalArgumentException("Illegal block type = " + type);
+        }
+    }
+
+    public static void main(String[] args) {
+        long n = Long.parseLong(args[0]);
+        LZWInputStream text = new LZWInputStream(System.in);
+        byte[] b = new byte[8192];
+        int count;
+        while (n > 0 && (count = text.read(b, 0, (int) Math.min(n, b.length))) > 0) {
+            System.out.write(b, 0, count);
+            n -= count;
+        }
+        System.out.flush();
+    }
+}
@@ -0,0 +1,217 @@
+/******************************************************************************
+ *  Compilation:  javac ResumableCompressor.java
+ *  Execution:    java ResumableCompressor - input output checkpoint [interval]
+ *                (compress as line records)
+ *  Execution:    java ResumableCompressor - input output checkpoint interval tst|hash|words [width [blockSize]]
+ *                (compress in blocks, 16-bit codes and 1M chars per block by default)
+ *  Execution:    java ResumableCompressor + input output checkpoint [interval]   (expand)
+ *  Dependencies: LZWEncoder.java LZWInputStream.java Checkpoint.java CompressionSettings.java
+ *
+ *  Compresses or expands a file, saving a checkpoint every interval bytes of text
+ *  (64M by default, or a size such as 512K or 1G). If the checkpoint file exists when
+ *  the job starts, the job carries on from it instead of starting over, and the output
+ *  ends up the same as if the job had never stopped. The checkpoint file is deleted
+ *  once the job is done.
+ *
+ *  Compression writes line records, like TextCompressor - lines, with each record cut
+ *  off at MAX_RECORD bytes so input without newlines can still be checkpointed, or
+ *  blocks, which are checkpointed between one block and the next. Expansion takes any
+ *  stream TextCompressor writes, and is checkpointed between two codes.
+ *
+ *  % java ResumableCompressor - huge.log huge.lzw huge.ckpt 256M
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  The {@code ResumableCompressor} class runs compress and expand jobs that survive being
+ *  stopped. Every so often the job makes sure its output so far is on disk and then saves
+ *  a {@link Checkpoint} of where it was. Starting the job again cuts the output back to the
+ *  checkpoint, skips the input it had already done, and rebuilds the encoder or decoder
+ *  from the checkpoint.
+ *
+ *  @author Stevie K. Halprin
+ */
+public class ResumableCompressor {
+
+    // Longest record compression reads at a time
+    public static final int MAX_RECORD = 1 << 20;
+    private static final long DEFAULT_INTERVAL = 64L << 20;
+    private static final int DEFAULT_WIDTH = 16;
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        Path input = Path.of(args[1]);
+        Path output = Path.of(args[2]);
+        Path checkpoint = Path.of(args[3]);
+        long interval = args.length > 4 ? CompressionSettings.parseSize(args[4]) : DEFAULT_INTERVAL;
+        if (args[0].equals("-")) {
+            CompressionSettings blocks = null;
+            if (args.length > 5) {
+                if (!args[5].equals("tst") && !args[5].equals("hash") && !args[5].equals("words"))
+                    throw new IllegalArgumentException("Illegal engine = " + args[5]);
+                // Words use the hash engine, as TextCompressor - words does
+                int engine = args[5].equals("tst") ? CompressionSettings.ENGINE_TST : CompressionSettings.ENGINE_HASH;
+                int width = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_WIDTH;
+                int blockSize = args.length > 7 ? CompressionSettings.parseBlockSize(args[7]) : DEFAULT_BLOCK_SIZE;
+                blocks = new CompressionSettings(width, blockSize, engine, args[5].equals("words"));
+            }
+            compress(input, output, checkpoint, interval, blocks);
+        }
+        else if (args[0].equals("+")) expand(input, output, checkpoint, interval);
+        else throw new IllegalArgumentException("Illegal command line argument");
+    }
+
+    /**
+     * Compresses the input file into the output file, carrying on from the checkpoint if there is one.
+     * @param input The file to compress.
+     * @param output The file to write.
+     * @param checkpointFile The file the checkpoint is kept in.
+     * @param interval The number of input bytes between checkpoints.
+     * @param blocks The settings to compress blocks with, or null to compress line records.
+     * @throws IllegalArgumentException if the blocks are a single block, which can't be checkpointed,
+     *         or the checkpoint was taken with other settings.
+     * @throws IOException if the input can't be read or the output can't be written.
+     */
+    public static void compress(Path input, Path output, Path checkpointFile, long interval,
+                                CompressionSettings blocks) throws IOException {
+        boolean records = blocks == null;
+        CompressionSettings settings = records ? CompressionSettings.RECORDS : blocks;
+        if (settings.blockSize == 0)
+            throw new IllegalArgumentException("A single block can't be checkpointed, so give a block size");
+        Checkpoint checkpoint = load(checkpointFile);
+        // Only records leave a block open between checkpoints
+        if (checkpoint != null
+                && (!checkpoint.settings.equals(settings) || checkpoint.legacy || (!records && checkpoint.inBlock())))
+            throw new IllegalArgumentException("Checkpoint was taken by a different job");
+
+        try (FileChannel in = FileChannel.open(input);
+             FileChannel outChannel = open(output, checkpoint)) {
+            long inputOffset = checkpoint == null ? 0 : checkpoint.inputOffset;
+            in.position(inputOffset);
+            InputStream text = new BufferedInputStream(Channels.newInputStream(in));
+            BinaryOut out = new BinaryOut(Channels.newOutputStream(outChannel));
+
+            LZWEncoder encoder;
+            if (checkpoint == null) {
+                settings.write(out);
+                encoder = new LZWEncoder(settings, out);
+            }
+            else {
+                encoder = new LZWEncoder(checkpoint, out);
+            }
+
+            long lastCheckpoint = inputOffset;
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            while (records ? TextCompressor.readLine(text, chunk, MAX_RECORD) : readBlock(text, chunk, settings.blockSize)) {
+                String s = chunk.toString(StandardCharsets.ISO_8859_1);
+                chunk.reset();
+                if (records) encoder.encodeRecord(s, 0, s.length());
+                else encoder.encodeBlock(s, 0, s.length());
+                inputOffset += s.length();
+                // Records and blocks end byte-aligned, so once flushed the output is complete up to here
+                if (inputOffset - lastCheckpoint >= interval) {
+                    flush(out, output);
+                    save(encoder.checkpoint(inputOffset, outChannel.position()), outChannel, checkpointFile);
+                    lastCheckpoint = inputOffset;
+                }
+            }
+            encoder.finish();
+            flush(out, output);
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    // Read the next block of at most blockSize bytes, returning false if there were none left
+    private static boolean readBlock(InputStream in, ByteArrayOutputStream block, int blockSize) throws IOException {
+        block.write(in.readNBytes(blockSize));
+        return block.size() > 0;
+    }
+
+    /**
+     * Expands the input file into the output file, carrying on from the checkpoint if there is one.
+     * @param input The file to expand, in the framed or the original format.
+     * @param output The file to write.
+     * @param checkpointFile The file the checkpoint is kept in.
+     * @param interval The number of output bytes between checkpoints.
+     * @throws IOException if the input can't be read or the output can't be written.
+     */
+    public static void expand(Path input, Path output, Path checkpointFile, long interval) throws IOException {
+        Checkpoint checkpoint = load(checkpointFile);
+        try (FileChannel inChannel = FileChannel.open(input);
+             FileChannel outChannel = open(output, checkpoint)) {
+            inChannel.position(checkpoint == null ? 0 : checkpoint.inputOffset);
+            InputStream compressed = Channels.newInputStream(inChannel);
+            LZWInputStream text = checkpoint == null
+                    ? new LZWInputStream(compressed) : new LZWInputStream(compressed, checkpoint);
+            BinaryOut out = new BinaryOut(Channels.newOutputStream(outChannel));
+
+            long outputOffset = outChannel.position();
+            long lastCheckpoint = outputOffset;
+            byte[] b = new byte[1 << 16];
+            int count;
+            // A read that stops partway through a phrase is followed by one for just the rest of it,
+            // so at least every other read ends between two codes, where a checkpoint can be taken
+            while ((count = text.read(b, 0, text.available() > 0 ? Math.min(b.length, text.available()) : b.length)) > 0) {
+                out.write(b, 0, count);
+                outputOffset += count;
+                if (text.available() == 0 && outputOffset - lastCheckpoint >= interval) {
+                    flush(out, output);
+                    save(text.checkpoint(outputOffset), outChannel, checkpointFile);
+                    lastCheckpoint = outputOffset;
+                }
+            }
+            flush(out, output);
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    // Read the checkpoint if there is one
+    private static Checkpoint load(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) return null;
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            return Checkpoint.read(new BinaryIn(in));
+        }
+    }
+
+    // Open the output, cut back to where the checkpoint was taken, or empty if there is none
+    private static FileChannel open(Path output, Checkpoint checkpoint) throws IOException {
+        FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long offset = checkpoint == null ? 0 : checkpoint.outputOffset;
+        if (channel.size() < offset) throw new IllegalStateException("Output is shorter than the checkpoint says");
+        channel.truncate(offset);
+        channel.position(offset);
+        return channel;
+    }
+
+    // Flush the output, failing the job if any of it couldn't be written, since a checkpoint
+    // saved after that would count on output that isn't there
+    private static void flush(BinaryOut out, Path output) throws IOException {
+        if (out.checkError()) throw new IOException("Could not write " + output);
+    }
+
+    // Make sure the output the checkpoint counts on is on disk, then replace the old checkpoint
+    // with the new one in a single step, so a stop at any moment leaves a usable checkpoint
+    private static void save(Checkpoint checkpoint, FileChannel output, Path checkpointFile) throws IOException {
+        output.force(false);
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryOut out = new BinaryOut(Channels.newOutputStream(channel));
+            checkpoint.write(out);
+            flush(out, temp);
+            channel.force(false);
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,172 @@
+/******************************************************************************
+ *  Compilation:  javac ScalabilityHarness.java
+ *  Execution:    java -Xmx256m ScalabilityHarness size [kind ...]
+ *  Dependencies: CorpusGenerator.java LZWEncoder.java LZWInputStream.java
+ *  Data files:   alice.txt (what the markov corpus is trained on)
+ *
+ *  Compresses and expands a synthetic corpus of each kind (all kinds by default)
+ *  through a temporary file, checks that the text comes back byte for byte, and
+ *  fails with exit status 1 if a round trip is wrong or a limit is broken.
+ *  The limits and settings can be changed with system properties:
+ *    -Dharness.minMBps=2        slowest compress or expand throughput allowed
+ *    -Dharness.maxRssMB=...     most resident memory allowed, by default the
+ *                               max heap plus 256 MB for the rest of the JVM
+ *    -Dharness.maxGcPercent=25  most of the wall time that may go to GC
+ *    -Dharness.engine=tst       dictionary engine, tst or hash
+ *    -Dharness.width=16         code width
+ *    -Dharness.blockSize=1M     chars per block
+ *    -Dharness.seed=1           seed of the corpora
+ *
+ *  % java -Xmx256m ScalabilityHarness 64M markov runs
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  The {@code ScalabilityHarness} class runs compress/expand round trips of corpora that
+ *  may be much larger than the heap. The corpus is compressed one block at a time straight
+ *  from a {@link CorpusGenerator}, and expanded through an {@link LZWInputStream} while a
+ *  second generator with the same seed makes the expected text, so memory stays bounded
+ *  by the block size and the dictionary, never by the size of the corpus.
+ *
+ *  @author Stevie K. Halprin
+ */
+public class ScalabilityHarness {
+
+    private static final double MIN_MBPS = Double.parseDouble(System.getProperty("harness.minMBps", "2"));
+    private static final long MAX_RSS_MB = Long.getLong("harness.maxRssMB", (Runtime.getRuntime().maxMemory() >> 20) + 256);
+    private static final double MAX_GC_PERCENT = Double.parseDouble(System.getProperty("harness.maxGcPercent", "25"));
+    private static final long SEED = Long.getLong("harness.seed", 1);
+
+    // Number of failed checks so far
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        long size = CompressionSettings.parseSize(args[0]);
+        List<String> kinds = Arrays.asList(args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : CorpusGenerator.KINDS);
+        int engine = System.getProperty("harness.engine", "tst").equals("hash")
+                ? CompressionSettings.ENGINE_HASH : CompressionSettings.ENGINE_TST;
+        CompressionSettings settings = new CompressionSettings(Integer.getInteger("harness.width", 16),
+                CompressionSettings.parseBlockSize(System.getProperty("harness.blockSize", "1M")), engine);
+
+        System.out.println(settings + ", max heap " + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+        System.out.printf("%-8s %10s %8s %12s %12s %8s %8s%n",
+                "kind", "MB", "ratio", "compress MB/s", "expand MB/s", "GC %", "RSS MB");
+        for (String kind : kinds) run(kind, size, settings);
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    // Round-trip one corpus, print a row of results, and check them against the limits
+    private static void run(String kind, long size, CompressionSettings settings) throws IOException {
+        Path file = Files.createTempFile("harness-" + kind, ".lzw");
+        try {
+            long wallStart = System.nanoTime();
+            long gcStart = gcMillis();
+            long compressNanos = compress(new CorpusGenerator(kind, size, SEED), file, settings);
+            long expandNanos = expand(new CorpusGenerator(kind, size, SEED), file, kind);
+            double wallMillis = (System.nanoTime() - wallStart) / 1e6;
+            double gcPercent = 100 * (gcMillis() - gcStart) / wallMillis;
+
+            double mb = size / (double) (1 << 20);
+            double compressMBps = mb / (compressNanos / 1e9);
+            double expandMBps = mb / (expandNanos / 1e9);
+            long rssMB = peakRssMB();
+            System.out.printf("%-8s %10.1f %8.3f %12.2f %12.2f %8.1f %8s%n", kind, mb,
+                    size == 0 ? 1.0 : Files.size(file) / (double) size, compressMBps, expandMBps,
+                    gcPercent, rssMB < 0 ? "-" : Long.toString(rssMB));
+
+            check(compressMBps >= MIN_MBPS, String.format("%s: compressed at %.2f MB/s, below %.2f", kind, compressMBps, MIN_MBPS));
+            check(expandMBps >= MIN_MBPS, String.format("%s: expanded at %.2f MB/s, below %.2f", kind, expandMBps, MIN_MBPS));
+            check(gcPercent <= MAX_GC_PERCENT, String.format("%s: %.1f%% of the time went to GC, above %.1f%%", kind, gcPercent, MAX_GC_PERCENT));
+            check(rssMB <= MAX_RSS_MB, kind + ": peak RSS of " + rssMB + " MB, above " + MAX_RSS_MB);
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Compress the corpus into the file block by block, and return the nanoseconds spent compressing
+    private static long compress(InputStream corpus, Path file, CompressionSettings settings) throws IOException {
+        BinaryOut out = new BinaryOut(Files.newOutputStream(file));
+        settings.write(out);
+        LZWEncoder encoder = new LZWEncoder(settings, out);
+        byte[] block = new byte[settings.blockSize];
+        long nanos = 0;
+        int n;
+        while ((n = corpus.readNBytes(block, 0, block.length)) > 0) {
+            String text = new String(block, 0, n, StandardCharsets.ISO_8859_1);
+            long start = System.nanoTime();
+            encoder.encodeBlock(text, 0, n);
+            nanos += System.nanoTime() - start;
+        }
+        long start = System.nanoTime();
+        encoder.finish();
+        out.close();
+        return nanos + System.nanoTime() - start;
+    }
+
+    // Expand the file and compare it to the corpus, and return the nanoseconds spent expanding
+    private static long expand(InputStream corpus, Path file, String kind) throws IOException {
+        try (InputStream in = new LZWInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] actual = new byte[1 << 16];
+            byte[] expected = new byte[actual.length];
+            long nanos = 0;
+            long offset = 0;
+            while (true) {
+                long start = System.nanoTime();
+                int n = in.readNBytes(actual, 0, actual.length);
+                nanos += System.nanoTime() - start;
+                int m = corpus.readNBytes(expected, 0, expected.length);
+                int mismatch = Arrays.mismatch(actual, 0, n, expected, 0, m);
+                if (mismatch >= 0) {
+                    check(false, kind + ": expanded text differs from the corpus at byte " + (offset + mismatch));
+                    return nanos;
+                }
+                if (n == 0) return nanos;
+                offset += n;
+            }
+        }
+    }
+
+    private static void check(boolean ok, String message) {
+        if (ok) return;
+        System.out.println("FAIL " + message);
+        failures++;
+    }
+
+    // Milliseconds spent in GC since the JVM started, over all collectors
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+
+    // Peak resident memory of this process so far, or -1 where /proc isn't available
+    private static long peakRssMB() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) >> 10;
+            }
+        }
+        catch (IOException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+}
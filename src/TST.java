@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
  * The {@code TST} class encodes a ternary search trie for use with LZW compression.
  *
@@ -6,10 +8,22 @@
  *
  * @Date: Written lovingly in 2024 for Adventures in Algorithms at Menlo School in Atherton, CA.
  */
-public class TST {
+public class TST implements LZWDictionary {
 
     public static final int EMPTY = -1;
+    // Number of chars the hot-phrase cache is keyed on
+    public static final int CACHE_KEY = 4;
     private Node root;
+    // Deepest node ending a word found by the last call to longestMatch
+    private Node matched;
+
+    // Hot-phrase cache (see enableCache), off until enabled
+    private long[] cacheKeys;
+    private Node[] cacheNodes;
+    private int[] cacheDepths;
+    private int cacheShift;
+    private long cacheHits;
+    private long cacheMisses;
 
     /**
      * Each Node contains its own charater, as well as references to its three children.
@@ -19,7 +33,7 @@ public class TST {
     private class Node {
         Node left, mid, right;
         char c;
-        int code;
+        int code = EMPTY;
     }
 
     /**
@@ -48,6 +62,212 @@ public class TST {
         return n;
     }
 
+    private Node newNode(char c) {
+        Node n = new Node();
+        n.c = c;
+        return n;
+    }
+
+    /**
+     * Turns on a direct-mapped cache from the next CACHE_KEY chars of the input to the
+     * deepest node among them that ends a word, so that common phrases skip most of the
+     * descent in {@link #longestMatch}. Matches are still extended through the TST.
+     * @param bits The log2 of the number of cache slots.
+     */
+    public void enableCache(int bits) {
+        cacheKeys = new long[1 << bits];
+        cacheNodes = new Node[1 << bits];
+        cacheDepths = new int[1 << bits];
+        cacheShift = 64 - bits;
+    }
+
+    /**
+     * Finds the longest word in the TST that is a prefix of s.substring(start, end),
+     * without building any Strings along the way.
+     * @param s The String to match against.
+     * @param start The index of the first character to match.
+     * @param end The index after the last character that may be matched.
+     * @return the length of the match in the upper 32 bits and its code in the lower 32 bits.
+     * If no word matches, the length is 0 and the code is EMPTY.
+     */
+    public long longestMatch(String s, int start, int end) {
+        matched = null;
+        if (cacheNodes == null || end - start < CACHE_KEY) return match(root, s, start, start, end, 0, EMPTY);
+
+        // Pack the next CACHE_KEY chars into the key, and hash it to a slot
+        long key = 0;
+        for (int i = start; i < start + CACHE_KEY; i++)
+            key = (key << 16) | s.charAt(i);
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> cacheShift);
+
+        // On a hit, pick up the descent right below the cached node
+        Node word = cacheNodes[slot];
+        if (word != null && cacheKeys[slot] == key) {
+            cacheHits++;
+            matched = word;
+            int depth = cacheDepths[slot];
+            long result = match(word.mid, s, start, start + depth, end, depth, word.code);
+            // Words added since the slot was filled can make it deeper, still within the key
+            int length = (int) (result >>> 32);
+            if (length > depth && length <= CACHE_KEY) {
+                cacheNodes[slot] = matched;
+                cacheDepths[slot] = length;
+            }
+            return result;
+        }
+        cacheMisses++;
+
+        // Otherwise descend through the key from the root, remembering its deepest word
+        Node n = root;
+        int length = 0;
+        int i = start;
+        word = null;
+        while (n != null && i < start + CACHE_KEY) {
+            char current = s.charAt(i);
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else {
+                i++;
+                if (n.code != EMPTY) {
+                    length = i - start;
+                    word = n;
+                }
+                n = n.mid;
+            }
+        }
+        if (word == null) return match(n, s, start, i, end, 0, EMPTY);
+        matched = word;
+        cacheKeys[slot] = key;
+        cacheNodes[slot] = word;
+        cacheDepths[slot] = length;
+        return match(n, s, start, i, end, length, word.code);
+    }
+
+    // Continue a descent at node n and index i, given the longest match found so far
+    private long match(Node n, String s, int start, int i, int end, int length, int code) {
+        while (n != null && i < end) {
+            char current = s.charAt(i);
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else {
+                i++;
+                // Remember the deepest node so far that ends a word
+                if (n.code != EMPTY) {
+                    length = i - start;
+                    code = n.code;
+                    matched = n;
+                }
+                n = n.mid;
+            }
+        }
+        return ((long) length << 32) | (code & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Inserts the word found by the last call to {@link #longestMatch} followed by the char c,
+     * starting from where that match ended instead of from the root.
+     * The last call must have matched at least one word.
+     * @param c The char to extend the last match with.
+     * @param code The code for the extended word.
+     */
+    public void insertAfterMatch(char c, int code) {
+        insertBelow(matched, c, code);
+    }
+
+    // Insert the char c with the given code among the children of the node that ends a word,
+    // and return its node
+    private Node insertBelow(Node parent, char c, int code) {
+        if (parent.mid == null) {
+            parent.mid = newNode(c);
+            parent.mid.code = code;
+            return parent.mid;
+        }
+        Node n = parent.mid;
+        while (true) {
+            if (c < n.c) {
+                if (n.left == null) n.left = newNode(c);
+                n = n.left;
+            }
+            else if (c > n.c) {
+                if (n.right == null) n.right = newNode(c);
+                n = n.right;
+            }
+            else {
+                n.code = code;
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public void exportEdges(int[] prefix, char[] last) {
+        // Walk the TST without recursion, as phrases can be thousands of chars deep. Each node
+        // is stacked with the code of the word its mid link hangs from, or EMPTY at the top
+        Node[] nodes = new Node[64];
+        int[] parents = new int[64];
+        int size = 0;
+        if (root != null) {
+            nodes[size] = root;
+            parents[size++] = EMPTY;
+        }
+        while (size > 0) {
+            Node n = nodes[--size];
+            int parent = parents[size];
+            if (parent != EMPTY && n.code != EMPTY) {
+                prefix[n.code] = parent;
+                last[n.code] = n.c;
+            }
+            if (size + 3 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                parents = Arrays.copyOf(parents, 2 * parents.length);
+            }
+            if (n.left != null) {
+                nodes[size] = n.left;
+                parents[size++] = parent;
+            }
+            if (n.right != null) {
+                nodes[size] = n.right;
+                parents[size++] = parent;
+            }
+            // Every prefix of an LZW phrase is a phrase too, so a node with a mid link ends a word
+            if (n.mid != null) {
+                nodes[size] = n.mid;
+                parents[size++] = n.code;
+            }
+        }
+    }
+
+    @Override
+    public void importEdges(int[] prefix, char[] last, int from, int to) {
+        // Find the node of every single symbol at the top of the TST, then hang each new
+        // phrase from the node of its prefix
+        Node[] byCode = new Node[to];
+        Node[] stack = new Node[64];
+        int size = 0;
+        if (root != null) stack[size++] = root;
+        while (size > 0) {
+            Node n = stack[--size];
+            if (n.code != EMPTY && n.code < to) byCode[n.code] = n;
+            if (size + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+            if (n.left != null) stack[size++] = n.left;
+            if (n.right != null) stack[size++] = n.right;
+        }
+        for (int code = from; code < to; code++)
+            byCode[code] = insertBelow(byCode[prefix[code]], last[code], code);
+    }
+
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    public long cacheMisses() {
+        return cacheMisses;
+    }
+
     public String getLongestPrefix(String s) {
         return getLongestPrefix(s, 0);
     }
@@ -1,7 +1,18 @@
 /******************************************************************************
  *  Compilation:  javac TextCompressor.java
  *  Execution:    java TextCompressor - < input.txt   (compress)
+ *  Execution:    java TextCompressor - small < input.txt   (compress, auto-tuned for size)
+ *  Execution:    java TextCompressor - fast < input.txt    (compress, auto-tuned for speed)
+ *  Execution:    java TextCompressor - hash 20 < input.txt (compress with the given engine,
+ *                tst or hash, and code width)
+ *  Execution:    java TextCompressor - words 14 < input.txt (compress with codes built over
+ *                words instead of single chars, at the given code width)
+ *  Execution:    java TextCompressor - lines < input.log   (compress each line as it arrives)
+ *  Execution:    java TextCompressor - length-prefixed < input.bin
+ *                (compress records that each start with a 32-bit big-endian length)
  *  Execution:    java TextCompressor + < input.txt   (expand)
+ *  Execution:    java TextCompressor + parallel < input.txt
+ *                (expand, spelling out the phrases of each block on every core)
  *  Dependencies: BinaryIn.java BinaryOut.java
  *  Data files:   abra.txt
  *                jabberwocky.txt
@@ -21,7 +32,14 @@
  *  = 43.54% compression ratio!
  ******************************************************************************/
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.NoSuchElementException;
 
 /**
  *  The {@code TextCompressor} class provides static methods for compressing
@@ -40,11 +58,145 @@ public class TextCompressor {
     // Integer representing maximum number of codewords
     // Initialized to 2^12
     public static final int MAX_CODES = 4096;
+    // Integer representing the code ending a record of a framed stream
+    public static final int RECORD = 257;
+    // Integer representing the first code of a framed stream that stands for a String
+    public static final int FIRST_CODE = 258;
 
+    // First byte of a framed stream. The first code of the original format is a char or EOF,
+    // so those streams always start with a byte of at most 0x10 and can't be mistaken for this
+    public static final int MAGIC = 0xA7;
+    // Byte starting each block of a framed stream
+    public static final int BLOCK_END = 0;
+    public static final int BLOCK_LZW = 1;
+    public static final int BLOCK_STORED = 2;
 
-    private static void compress() {
+
+    private static void compress(String option, String width) {
+        if ("lines".equals(option)) {
+            compressRecords(false);
+            return;
+        }
+        if ("length-prefixed".equals(option)) {
+            compressRecords(true);
+            return;
+        }
         // Read in the text version of the binary file into a string
         String text = BinaryStdIn.readString();
+        BinaryOut out = new BinaryOut();
+        // Without an option, write the original format
+        if (option == null) {
+            compress(text, out);
+        }
+        else if (option.equals("tst") || option.equals("hash")) {
+            int engine = option.equals("hash") ? CompressionSettings.ENGINE_HASH : CompressionSettings.ENGINE_TST;
+            int w = width == null ? WIDTH : Integer.parseInt(width);
+            compress(text, out, new CompressionSettings(w, 0, engine));
+        }
+        else if (option.equals("words")) {
+            // The hash engine, since the wider alphabet of words makes each level of the TST deeper
+            int w = width == null ? WIDTH : Integer.parseInt(width);
+            compress(text, out, new CompressionSettings(w, 0, CompressionSettings.ENGINE_HASH, true));
+        }
+        else if (option.equals("small") || option.equals("fast")) {
+            AutoTuner.Target target = option.equals("small") ? AutoTuner.Target.SMALL : AutoTuner.Target.FAST;
+            CompressionSettings settings = AutoTuner.tune(text, target);
+            // The tuner hands back the default settings when the original format is the smallest
+            if (settings == CompressionSettings.DEFAULT) compress(text, out);
+            else compress(text, out, settings);
+        }
+        else {
+            throw new IllegalArgumentException("Illegal command line argument");
+        }
+        out.close();
+    }
+
+    /**
+     * Compresses standard input one record at a time, writing out each record as soon as it
+     * has been read. The dictionary is shared across records, so later records still
+     * benefit from the earlier ones.
+     * @param lengthPrefixed Whether each record starts with its 32-bit length rather than ending in a newline.
+     */
+    private static void compressRecords(boolean lengthPrefixed) {
+        BinaryOut out = new BinaryOut();
+        CompressionSettings.RECORDS.write(out);
+        out.flush();
+        LZWEncoder encoder = new LZWEncoder(CompressionSettings.RECORDS, out);
+
+        InputStream in = new BufferedInputStream(System.in);
+        // Bytes of the current record, including its newline or length, so expand() gives back the input as is
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try {
+            while (lengthPrefixed ? readLengthPrefixed(in, record) : readLine(in, record, Integer.MAX_VALUE)) {
+                String text = record.toString(StandardCharsets.ISO_8859_1);
+                encoder.encodeRecord(text, 0, text.length());
+                record.reset();
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not read record", e);
+        }
+        encoder.finish();
+        out.close();
+    }
+
+    // Read bytes up to and including the next newline, but no more than maxLength,
+    // returning false if there were none left
+    static boolean readLine(InputStream in, ByteArrayOutputStream record, int maxLength) throws IOException {
+        int c;
+        while (record.size() < maxLength && (c = in.read()) != -1) {
+            record.write(c);
+            if (c == '\n') break;
+        }
+        return record.size() > 0;
+    }
+
+    // Read the 32-bit length and the bytes it counts, returning false if there were none left
+    private static boolean readLengthPrefixed(InputStream in, ByteArrayOutputStream record) throws IOException {
+        byte[] length = in.readNBytes(4);
+        if (length.length == 0) return false;
+        record.write(length);
+        if (length.length < 4) return true;
+        int n = ((length[0] & 0xff) << 24) | ((length[1] & 0xff) << 16) | ((length[2] & 0xff) << 8) | (length[3] & 0xff);
+        if (n < 0) throw new IllegalArgumentException("Illegal record length = " + n);
+        record.write(in.readNBytes(n));
+        return true;
+    }
+
+    private static void expand(String option) {
+        BinaryOut out = new BinaryOut();
+        expand(new BinaryIn(), out, "parallel".equals(option));
+        out.close();
+    }
+
+    /**
+     * Compresses the given bytes in memory, producing the same output as {@code compress()}.
+     * @param data the bytes to compress
+     * @return the compressed bytes
+     */
+    public static byte[] compress(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        // Every byte maps onto the char with the same value, exactly as BinaryStdIn reads them
+        compress(new String(data, StandardCharsets.ISO_8859_1), out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Expands the given compressed bytes in memory, producing the same output as {@code expand()}.
+     * @param data the compressed bytes
+     * @return the expanded bytes
+     */
+    public static byte[] expand(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        expand(new BinaryIn(new ByteArrayInputStream(data)), out, false);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static void compress(String text, BinaryOut out) {
         // TST holding all the value codes associated with each added character sequence
         TST codes = new TST();
         // Integer representing next available code for a String
@@ -69,7 +221,7 @@ public class TextCompressor {
                 codes.insert(prefix, text.charAt(index));
             }
             // Write out the code representing the prefix
-            BinaryStdOut.write(codes.lookup(prefix), WIDTH);
+            out.write(codes.lookup(prefix), WIDTH);
             // Store the current index before it is incremented
             originalIndex = index;
             // Increment index by the length of prefix to the next new char in the text
@@ -88,12 +240,83 @@ public class TextCompressor {
             }
         }
         // Write out the code signifying the end of the file
-        BinaryStdOut.write(EOF, WIDTH);
+        out.write(EOF, WIDTH);
+    }
 
-        BinaryStdOut.close();
+    /**
+     * Compresses the text as a framed stream: a header holding the settings, followed by
+     * blocks of at most {@code settings.blockSize} chars that each start a new dictionary.
+     * @param text The text to compress.
+     * @param out The stream to write to.
+     * @param settings The settings to compress with.
+     */
+    public static void compress(String text, BinaryOut out, CompressionSettings settings) {
+        settings.write(out);
+        LZWEncoder encoder = new LZWEncoder(settings, out);
+        encoder.encode(text);
+        encoder.finish();
+    }
+
+    /**
+     * Expands the given compressed bytes in memory like {@link #expand(byte[])}, but spells
+     * out the phrases of each block on every core once its codes have been read.
+     * @param data the compressed bytes
+     * @return the expanded bytes
+     */
+    public static byte[] expandParallel(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        expand(new BinaryIn(new ByteArrayInputStream(data)), out, true);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void expand(BinaryIn in, BinaryOut out, boolean parallel) {
+        // Framed streams say how they were compressed in their header
+        if (!in.isEmpty() && in.peek() == MAGIC) {
+            expandFramed(in, out, parallel);
+        }
+        else if (parallel) {
+            byte[] text = LZWDecoder.legacy().decodeBlockParallel(in);
+            out.write(text, 0, text.length);
+        }
+        else {
+            expandLegacy(in, out);
+        }
+    }
+
+    private static void expandFramed(BinaryIn in, BinaryOut out, boolean parallel) {
+        CompressionSettings settings = CompressionSettings.read(in);
+        LZWDecoder decoder = new LZWDecoder(settings);
+        // Phrases of word mode are spelled out through the word table, one code at a time
+        parallel &= !settings.words;
+        while (true) {
+            int type = in.readInt(8);
+            if (type == BLOCK_END) break;
+            if (type == BLOCK_LZW && parallel) {
+                byte[] text = decoder.decodeBlockParallel(in);
+                out.write(text, 0, text.length);
+            }
+            else if (type == BLOCK_LZW) decoder.decodeBlock(in, out);
+            else if (type == BLOCK_STORED) copyStored(in, out);
+            else throw new IllegalArgumentException("Illegal block type = " + type);
+        }
+    }
+
+    // Copy a stored block, whose block type has already been read, straight to the output
+    private static void copyStored(BinaryIn in, BinaryOut out) {
+        int length = in.readInt();
+        if (length < 0) throw new IllegalArgumentException("Illegal stored block length = " + length);
+        byte[] chunk = new byte[Math.min(length, 1 << 16)];
+        while (length > 0) {
+            int count = in.readBytes(chunk, 0, Math.min(length, chunk.length));
+            if (count == 0) throw new NoSuchElementException("Reading from empty input stream");
+            out.write(chunk, 0, count);
+            length -= count;
+        }
     }
 
-    private static void expand() {
+    private static void expandLegacy(BinaryIn in, BinaryOut out) {
 
         // HashMap holding all the value codes associated with each added character sequence
         HashMap<Integer, String> codes = new HashMap<>();
@@ -108,7 +331,9 @@ public class TextCompressor {
         int nextPreVal;
 
         // Get the first code from the compressed file
-        nextPreVal = BinaryStdIn.readInt(WIDTH);
+        nextPreVal = in.readInt(WIDTH);
+        // An empty file is only the end of file code
+        if (nextPreVal == EOF) return;
         // Set nextPrefix equal to the char of the code
         nextPrefix = "" + (char)nextPreVal;
         // Add the code-char pair to the HashMap
@@ -119,13 +344,12 @@ public class TextCompressor {
             // Set the prefix to the String associated with the current code
             prefix = nextPrefix;
             // Write out the String representing the prefix
-            BinaryStdOut.write(prefix);
+            out.write(prefix);
 
             // Read in the next code, and get the String associated with the code from the HashMap
-            nextPreVal = BinaryStdIn.readInt(WIDTH);
-            // If the next character is the end of the file code, close out of the file and stop iterating
+            nextPreVal = in.readInt(WIDTH);
+            // If the next character is the end of the file code, stop iterating
             if (nextPreVal == EOF) {
-                BinaryStdOut.close();
                 break;
             }
 
@@ -167,8 +391,8 @@ public class TextCompressor {
     }
 
     public static void main(String[] args) {
-        if      (args[0].equals("-")) compress();
-        else if (args[0].equals("+")) expand();
+        if      (args[0].equals("-")) compress(args.length > 1 ? args[1] : null, args.length > 2 ? args[2] : null);
+        else if (args[0].equals("+")) expand(args.length > 1 ? args[1] : null);
         else throw new IllegalArgumentException("Illegal command line argument");
     }
 }
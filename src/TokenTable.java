@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * The {@code TokenTable} class interns the tokens of a text: runs of letters and digits
+ * (words), runs of whitespace, and single punctuation chars. Each distinct token gets the
+ * next int id, its chars are kept back to back in one char array, and it is found again
+ * through an open-addressing hash table of ids, so looking a token up in the text
+ * never builds a String.
+ *
+ * @author Stevie K. Halprin
+ */
+public class TokenTable {
+
+    // Longest token, so that its length fits in a byte. Longer runs are split
+    public static final int MAX_LENGTH = 255;
+
+    // Kind of each 8-bit char, looked up once rather than asking Character for every char
+    private static final byte[] KINDS = new byte[256];
+    static {
+        for (char c = 0; c < KINDS.length; c++) {
+            if (Character.isLetterOrDigit(c)) KINDS[c] = 1;
+            else if (Character.isWhitespace(c)) KINDS[c] = 2;
+        }
+    }
+
+    // Chars of every token, back to back; token i is pool[starts[i], starts[i] + lengths[i])
+    private char[] pool = new char[1 << 12];
+    private int poolSize;
+    private int[] starts = new int[1 << 8];
+    private int[] lengths = new int[1 << 8];
+    // Number of times each token has been interned
+    private int[] counts = new int[1 << 8];
+    private int size;
+
+    // For each slot: the id of a token plus one, or 0 if the slot is free
+    private int[] slots = new int[1 << 9];
+    // Shift that leaves the top log2(slots.length) bits of a hash
+    private int shift = 32 - 9;
+
+    /**
+     * Returns the index after the token starting at index start of the text.
+     * @param text The text being tokenized.
+     * @param start The index of the first char of the token.
+     * @param end The index after the last char that may be part of the token.
+     * @return the index after the last char of the token.
+     */
+    public static int tokenEnd(String text, int start, int end) {
+        int kind = kind(text.charAt(start));
+        // Punctuation is never grouped, so it stays one char per token
+        if (kind == 0) return start + 1;
+        int stop = Math.min(end, start + MAX_LENGTH);
+        int i = start + 1;
+        while (i < stop && kind(text.charAt(i)) == kind) i++;
+        return i;
+    }
+
+    // 1 for letters and digits, 2 for whitespace, 0 for anything else
+    private static int kind(char c) {
+        if (c < KINDS.length) return KINDS[c];
+        if (Character.isLetterOrDigit(c)) return 1;
+        if (Character.isWhitespace(c)) return 2;
+        return 0;
+    }
+
+    /**
+     * @return the number of distinct tokens in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int length(int id) {
+        return lengths[id];
+    }
+
+    public int count(int id) {
+        return counts[id];
+    }
+
+    public String token(int id) {
+        return new String(pool, starts[id], lengths[id]);
+    }
+
+    /**
+     * @return the number of bits {@link #write(BinaryOut)} takes.
+     */
+    public long bits() {
+        return 16 + 8L * (size + poolSize);
+    }
+
+    /**
+     * Finds the id of text.substring(start, end), adding it if it is new, and counts it once more.
+     * @param text The text holding the token.
+     * @param start The index of the first char of the token.
+     * @param end The index after the last char of the token.
+     * @return the id of the token.
+     */
+    public int intern(String text, int start, int end) {
+        int slot = slot(text, start, end);
+        int id = slots[slot] - 1;
+        if (id < 0) id = add(slot, text, start, end);
+        counts[id]++;
+        return id;
+    }
+
+    /**
+     * Finds the id of text.substring(start, end) without adding it.
+     * @param text The text holding the token.
+     * @param start The index of the first char of the token.
+     * @param end The index after the last char of the token.
+     * @return the id of the token, or -1 if it is not in the table.
+     */
+    public int find(String text, int start, int end) {
+        return slots[slot(text, start, end)] - 1;
+    }
+
+    /**
+     * Copies the chars of a token, as 8-bit bytes, into the given array.
+     * @param id The id of the token.
+     * @param b The array to copy into.
+     * @param off The index of b to copy the first char to.
+     * @return the index of b after the last char copied.
+     */
+    public int copy(int id, byte[] b, int off) {
+        int start = starts[id];
+        int length = lengths[id];
+        for (int i = 0; i < length; i++)
+            b[off + i] = (byte) pool[start + i];
+        return off + length;
+    }
+
+    /**
+     * Copies the chars of a token into the given array.
+     * @param id The id of the token.
+     * @param dst The array to copy into.
+     * @param off The index of dst to copy the first char to.
+     * @return the index of dst after the last char copied.
+     */
+    public int getChars(int id, char[] dst, int off) {
+        System.arraycopy(pool, starts[id], dst, off, lengths[id]);
+        return off + lengths[id];
+    }
+
+    /**
+     * Writes the tokens in id order: their number in 16 bits, then each one's length in 8 bits and its chars.
+     * @param out The stream to write to.
+     * @throws IllegalStateException if there are more tokens than fit in 16 bits.
+     */
+    public void write(BinaryOut out) {
+        if (size > 0xFFFF) throw new IllegalStateException("Too many tokens = " + size);
+        out.write(size, 16);
+        for (int id = 0; id < size; id++) {
+            out.write(lengths[id], 8);
+            for (int i = 0; i < lengths[id]; i++)
+                out.write(pool[starts[id] + i]);
+        }
+    }
+
+    /**
+     * Reads tokens written by {@link #write(BinaryOut)}.
+     * @param in The stream to read from.
+     * @return the table holding the tokens, with the same ids they were written with.
+     * @throws IllegalArgumentException if a token is empty or appears twice.
+     */
+    public static TokenTable read(BinaryIn in) {
+        TokenTable table = new TokenTable();
+        int size = in.readInt(16);
+        for (int id = 0; id < size; id++) {
+            int length = in.readInt(8);
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+                chars[i] = in.readChar();
+            String token = new String(chars);
+            if (length == 0 || table.find(token, 0, length) >= 0)
+                throw new IllegalArgumentException("Illegal token = \"" + token + "\"");
+            table.intern(token, 0, length);
+        }
+        return table;
+    }
+
+    // Return the slot holding the token, or the free slot where it would go
+    private int slot(String text, int start, int end) {
+        int mask = slots.length - 1;
+        int i = hash(text, start, end) >>> shift;
+        while (slots[i] != 0 && !equals(slots[i] - 1, text, start, end))
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++)
+            h = 31 * h + text.charAt(i);
+        // Every char has a say in the top bits, which pick the slot
+        return h * 0x9E3779B9;
+    }
+
+    private boolean equals(int id, String text, int start, int end) {
+        if (lengths[id] != end - start) return false;
+        int p = starts[id];
+        for (int i = start; i < end; i++, p++)
+            if (pool[p] != text.charAt(i)) return false;
+        return true;
+    }
+
+    // Add the token at the given free slot, keeping the table at most half full
+    private int add(int slot, String text, int start, int end) {
+        int length = end - start;
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+            counts = Arrays.copyOf(counts, 2 * size);
+        }
+        if (poolSize + length > pool.length)
+            pool = Arrays.copyOf(pool, Math.max(2 * pool.length, poolSize + length));
+        text.getChars(start, end, pool, poolSize);
+        starts[size] = poolSize;
+        lengths[size] = length;
+        poolSize += length;
+        int id = size++;
+        slots[slot] = id + 1;
+        if (2 * size > slots.length) rehash();
+        return id;
+    }
+
+    // Double the number of slots and put every token back in
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        shift--;
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            String token = new String(pool, starts[id], lengths[id]);
+            int i = hash(token, 0, lengths[id]) >>> shift;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+}